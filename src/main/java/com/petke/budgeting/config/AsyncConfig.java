@@ -0,0 +1,27 @@
+package com.petke.budgeting.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Bounded executor the async API hands JDBC work to, so servlet threads are released while requests wait
+ * for the database. Sized to the connection pool, more threads would only queue on connections.
+ */
+@Configuration
+@ConditionalOnProperty(name = "budgeting.async.enabled", havingValue = "true")
+public class AsyncConfig {
+
+    @Bean
+    public ThreadPoolTaskExecutor jdbcExecutor(@Value("${budgeting.async.pool-size:10}") int poolSize,
+                                               @Value("${budgeting.async.queue-capacity:10000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("jdbc-");
+        return executor;
+    }
+}
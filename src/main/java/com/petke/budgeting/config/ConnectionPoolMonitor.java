@@ -0,0 +1,91 @@
+package com.petke.budgeting.config;
+
+import com.petke.budgeting.repository.ShardRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Logs when requests start and stop waiting for a pooled connection and reports the pool state as the
+ * {@code connectionPool} health details, one entry per pool when sharded. Waits, usage and acquire times are
+ * also exported as the {@code hikaricp.connections.*} meters.
+ */
+@Slf4j
+@Component("connectionPool")
+public class ConnectionPoolMonitor implements HealthIndicator {
+
+    private final List<HikariDataSource> dataSources;
+    private final boolean[] saturated;
+
+    public ConnectionPoolMonitor(DataSource dataSource) throws SQLException {
+        this.dataSources = dataSource instanceof ShardRoutingDataSource
+                ? ((ShardRoutingDataSource) dataSource).getShards()
+                : List.of(dataSource.unwrap(HikariDataSource.class));
+        this.saturated = new boolean[dataSources.size()];
+    }
+
+    @Scheduled(fixedDelayString = "${budgeting.datasource.saturation-check-interval-ms:1000}")
+    public synchronized void check() {
+        for (int i = 0; i < dataSources.size(); i++) {
+            HikariDataSource dataSource = dataSources.get(i);
+            HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+
+            if (Objects.isNull(pool)) {
+                continue;
+            }
+
+            int waiting = pool.getThreadsAwaitingConnection();
+            if (waiting > 0 && !saturated[i]) {
+                log.warn("Connection pool {} saturated: {} of {} connections active, {} threads waiting",
+                        dataSource.getPoolName(), pool.getActiveConnections(), dataSource.getMaximumPoolSize(), waiting);
+            } else if (waiting == 0 && saturated[i]) {
+                log.info("Connection pool {} no longer saturated: {} of {} connections active",
+                        dataSource.getPoolName(), pool.getActiveConnections(), dataSource.getMaximumPoolSize());
+            }
+            saturated[i] = waiting > 0;
+        }
+    }
+
+    @Override
+    public Health health() {
+        if (dataSources.size() == 1) {
+            Map<String, Object> details = details(dataSources.get(0));
+            return Objects.isNull(details) ? Health.unknown().build() : Health.up().withDetails(details).build();
+        }
+
+        Map<String, Object> pools = new LinkedHashMap<>();
+        for (HikariDataSource dataSource : dataSources) {
+            pools.put(dataSource.getPoolName(), Objects.requireNonNullElse(details(dataSource), Map.of()));
+        }
+        return Health.up().withDetails(pools).build();
+    }
+
+    /**
+     * @return {@code null} until the pool started
+     */
+    private static Map<String, Object> details(HikariDataSource dataSource) {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+
+        if (Objects.isNull(pool)) {
+            return null;
+        }
+
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("active", pool.getActiveConnections());
+        details.put("idle", pool.getIdleConnections());
+        details.put("maximum", dataSource.getMaximumPoolSize());
+        details.put("waiting", pool.getThreadsAwaitingConnection());
+        return details;
+    }
+}
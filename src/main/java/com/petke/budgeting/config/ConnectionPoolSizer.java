@@ -0,0 +1,45 @@
+package com.petke.budgeting.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sizes the Hikari pool to {@code cores * connections-per-core + spindles} connections, the usual starting point
+ * for a database on the same number of cores. Disabled while {@code connections-per-core} is 0, the default.
+ */
+@Slf4j
+@Component
+public class ConnectionPoolSizer implements BeanPostProcessor {
+
+    private final int connectionsPerCore;
+    private final int spindles;
+
+    public ConnectionPoolSizer(@Value("${budgeting.datasource.connections-per-core:0}") int connectionsPerCore,
+                               @Value("${budgeting.datasource.spindles:1}") int spindles) {
+        this.connectionsPerCore = connectionsPerCore;
+        this.spindles = spindles;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof HikariDataSource) {
+            size((HikariDataSource) bean, beanName);
+        }
+
+        return bean;
+    }
+
+    /**
+     * Sizes pools that are not beans of their own, like the shards of a {@link ShardingConfig}.
+     */
+    public void size(HikariDataSource dataSource, String name) {
+        if (connectionsPerCore > 0) {
+            int poolSize = Runtime.getRuntime().availableProcessors() * connectionsPerCore + spindles;
+            dataSource.setMaximumPoolSize(poolSize);
+            log.info("Sized connection pool '{}' to {} connections", name, poolSize);
+        }
+    }
+}
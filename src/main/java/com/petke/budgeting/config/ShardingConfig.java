@@ -0,0 +1,65 @@
+package com.petke.budgeting.config;
+
+import com.petke.budgeting.repository.ShardRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One Hikari pool per url of {@code budgeting.sharding.urls}, all configured like the single pool through
+ * {@code spring.datasource.*}, behind a {@link ShardRoutingDataSource} that JPA and JDBC use. Flyway migrates
+ * every shard.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "budgeting.sharding.urls")
+public class ShardingConfig {
+
+    @Bean
+    @Primary
+    public ShardRoutingDataSource dataSource(DataSourceProperties properties,
+                                             Environment environment,
+                                             ConnectionPoolSizer connectionPoolSizer,
+                                             MeterRegistry meterRegistry,
+                                             @Value("${budgeting.sharding.urls}") List<String> urls) {
+        List<HikariDataSource> shards = new ArrayList<>(urls.size());
+
+        for (int shard = 0; shard < urls.size(); shard++) {
+            HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                    .type(HikariDataSource.class)
+                    .url(urls.get(shard))
+                    .build();
+            Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(dataSource));
+            dataSource.setPoolName("shard-" + shard);
+            dataSource.setMetricRegistry(meterRegistry);
+            connectionPoolSizer.size(dataSource, dataSource.getPoolName());
+            shards.add(dataSource);
+        }
+
+        log.info("Routing registries of users to {} shards", shards.size());
+        return new ShardRoutingDataSource(shards);
+    }
+
+    @Bean
+    public FlywayMigrationStrategy shardedMigration(ShardRoutingDataSource dataSource) {
+        return flyway -> dataSource.getShards().forEach(shard -> Flyway.configure()
+                .configuration(flyway.getConfiguration())
+                .dataSource(shard)
+                .load()
+                .migrate());
+    }
+}
@@ -1,5 +1,7 @@
 package com.petke.budgeting.config;
 
+import com.petke.budgeting.model.Money;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import springfox.documentation.builders.PathSelectors;
@@ -8,8 +10,14 @@ import springfox.documentation.spi.DocumentationType;
 import springfox.documentation.spring.web.plugins.Docket;
 import springfox.documentation.swagger2.annotations.EnableSwagger2;
 
+import java.math.BigDecimal;
+
+/**
+ * Scans the controllers at startup, {@code budgeting.swagger.enabled=false} skips that, e.g. for fast starts.
+ */
 @Configuration
 @EnableSwagger2
+@ConditionalOnProperty(name = "budgeting.swagger.enabled", havingValue = "true", matchIfMissing = true)
 public class SwaggerConfig {
 
     @Bean
@@ -18,6 +26,7 @@ public class SwaggerConfig {
                 .select()
                 .apis(RequestHandlerSelectors.basePackage("com.petke.budgeting.controller"))
                 .paths(PathSelectors.any())
-                .build();
+                .build()
+                .directModelSubstitute(Money.class, BigDecimal.class);
     }
 }
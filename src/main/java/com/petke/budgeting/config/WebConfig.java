@@ -0,0 +1,21 @@
+package com.petke.budgeting.config;
+
+import com.petke.budgeting.controller.RequestAdmissionInterceptor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    private final RequestAdmissionInterceptor requestAdmissionInterceptor;
+
+    public WebConfig(RequestAdmissionInterceptor requestAdmissionInterceptor) {
+        this.requestAdmissionInterceptor = requestAdmissionInterceptor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(requestAdmissionInterceptor);
+    }
+}
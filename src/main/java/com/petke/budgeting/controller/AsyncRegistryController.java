@@ -0,0 +1,92 @@
+package com.petke.budgeting.controller;
+
+import com.petke.budgeting.model.BalanceOperation;
+import com.petke.budgeting.model.request.BatchTransferRequest;
+import com.petke.budgeting.model.request.RechargeRequest;
+import com.petke.budgeting.model.request.TransferRequest;
+import com.petke.budgeting.model.response.BatchTransferResponse;
+import com.petke.budgeting.service.IdempotencyService;
+import com.petke.budgeting.service.RateLimit;
+import com.petke.budgeting.service.RegistryService;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.validation.Valid;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Same API as {@link RegistryController}, executed on the bounded JDBC executor. The servlet thread is
+ * released as soon as the work is queued, so in-flight requests are no longer capped by the Tomcat pool.
+ */
+@RestController
+@RequestMapping("api/async/budget")
+@ConditionalOnProperty(name = "budgeting.async.enabled", havingValue = "true")
+public class AsyncRegistryController {
+
+    private final RegistryService registryService;
+    private final IdempotencyService idempotencyService;
+    private final Executor jdbcExecutor;
+
+    public AsyncRegistryController(RegistryService registryService,
+                                   IdempotencyService idempotencyService,
+                                   @Qualifier("jdbcExecutor") Executor jdbcExecutor) {
+        this.registryService = registryService;
+        this.idempotencyService = idempotencyService;
+        this.jdbcExecutor = jdbcExecutor;
+    }
+
+    /**
+     * {@code If-None-Match} is checked when the response is written after the async dispatch, by the same
+     * {@code checkNotModified} as the blocking endpoint.
+     */
+    @GetMapping(value = "{userId}/registry", produces = MediaType.APPLICATION_JSON_VALUE)
+    @RateLimited(RateLimit.READ)
+    public CompletableFuture<ResponseEntity<byte[]>> getRegistries(@PathVariable String userId) {
+        return CompletableFuture
+                .supplyAsync(() -> registryService.findListingByUserId(userId), jdbcExecutor)
+                .thenApply(listing -> ResponseEntity.ok()
+                        .eTag(listing.getEtag())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(listing.getBody()));
+    }
+
+    @PostMapping("{userId}/registry/{registryId}/recharge")
+    @RateLimited(RateLimit.RECHARGE)
+    public CompletableFuture<ResponseEntity<Void>> recharge(@PathVariable String userId,
+                                                            @PathVariable String registryId,
+                                                            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+                                                            @RequestBody @Valid RechargeRequest rechargeRequest) {
+        String request = IdempotencyService.describe(BalanceOperation.RECHARGE, registryId, null, rechargeRequest.getAmount());
+        return CompletableFuture
+                .runAsync(() -> idempotencyService.execute(userId, idempotencyKey, request,
+                        () -> registryService.recharge(userId, registryId, rechargeRequest)), jdbcExecutor)
+                .thenApply(ignored -> ResponseEntity.ok().build());
+    }
+
+    @PostMapping("{userId}/registry/{registryId}/transfer")
+    @RateLimited(RateLimit.TRANSFER)
+    public CompletableFuture<ResponseEntity<Void>> transfer(@PathVariable String userId,
+                                                            @PathVariable String registryId,
+                                                            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+                                                            @RequestBody @Valid TransferRequest transferRequest) {
+        String request = IdempotencyService.describe(BalanceOperation.TRANSFER_OUT, registryId,
+                transferRequest.getTargetRegistryId(), transferRequest.getAmount());
+        return CompletableFuture
+                .runAsync(() -> idempotencyService.execute(userId, idempotencyKey, request,
+                        () -> registryService.transfer(userId, registryId, transferRequest)), jdbcExecutor)
+                .thenApply(ignored -> ResponseEntity.ok().build());
+    }
+
+    @PostMapping("{userId}/registry/transfers")
+    @RateLimited(RateLimit.TRANSFER)
+    public CompletableFuture<ResponseEntity<BatchTransferResponse>> transferBatch(@PathVariable String userId,
+                                                                                  @RequestBody @Valid BatchTransferRequest batchTransferRequest) {
+        return CompletableFuture
+                .supplyAsync(() -> registryService.transferBatch(userId, batchTransferRequest), jdbcExecutor)
+                .thenApply(ResponseEntity::ok);
+    }
+}
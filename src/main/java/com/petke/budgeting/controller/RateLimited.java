@@ -0,0 +1,18 @@
+package com.petke.budgeting.controller;
+
+import com.petke.budgeting.service.RateLimit;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Limits the requests to the annotated handler per {@code userId} path variable, see {@link RequestAdmissionInterceptor}.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RateLimited {
+
+    RateLimit value();
+}
@@ -0,0 +1,58 @@
+package com.petke.budgeting.controller;
+
+import com.petke.budgeting.model.response.ImportResult;
+import com.petke.budgeting.service.RegistryBulkService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Bulk import and export of the registries of all users, the request and response bodies are streamed.
+ * Not scoped to a user, so only exposed with {@code budgeting.bulk.endpoints-enabled=true}.
+ */
+@RestController
+@ConditionalOnProperty(name = "budgeting.bulk.endpoints-enabled", havingValue = "true")
+@RequestMapping("api/budget/registries")
+public class RegistryBulkController {
+
+    private static final String TEXT_CSV_VALUE = "text/csv";
+    private static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    private final RegistryBulkService registryBulkService;
+
+    public RegistryBulkController(RegistryBulkService registryBulkService) {
+        this.registryBulkService = registryBulkService;
+    }
+
+    @PostMapping(consumes = TEXT_CSV_VALUE)
+    public ResponseEntity<ImportResult> importCsv(InputStream body) throws IOException {
+        return ResponseEntity.ok(registryBulkService.importCsv(body));
+    }
+
+    @PostMapping(consumes = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ImportResult> importNdjson(InputStream body) throws IOException {
+        return ResponseEntity.ok(registryBulkService.importNdjson(body));
+    }
+
+    @GetMapping(produces = TEXT_CSV_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportCsv() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(TEXT_CSV_VALUE))
+                .body(registryBulkService::exportCsv);
+    }
+
+    @GetMapping(produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportNdjson() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+                .body(registryBulkService::exportNdjson);
+    }
+}
@@ -1,44 +1,187 @@
 package com.petke.budgeting.controller;
 
-import com.google.common.collect.ImmutableList;
+import com.petke.budgeting.model.BalanceOperation;
+import com.petke.budgeting.model.HistoryResolution;
+import com.petke.budgeting.model.request.BatchTransferRequest;
 import com.petke.budgeting.model.request.RechargeRequest;
 import com.petke.budgeting.model.request.TransferRequest;
-import com.petke.budgeting.model.response.RegistryResponse;
+import com.petke.budgeting.model.response.BalanceDelta;
+import com.petke.budgeting.model.response.BatchTransferResponse;
+import com.petke.budgeting.model.response.HistoryBucket;
+import com.petke.budgeting.model.response.RegistryListing;
+import com.petke.budgeting.model.response.RegistryPage;
+import com.petke.budgeting.model.response.UserTotalCheck;
+import com.petke.budgeting.model.response.UserTotalResponse;
+import com.petke.budgeting.service.BalanceEventBus;
+import com.petke.budgeting.service.IdempotencyService;
+import com.petke.budgeting.service.RateLimit;
+import com.petke.budgeting.service.RegistryHistory;
 import com.petke.budgeting.service.RegistryService;
+import com.petke.budgeting.service.UserTotalService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.io.IOException;
 import java.util.List;
+import java.util.Objects;
 
 @RestController
 @RequestMapping("api/budget")
 public class RegistryController {
 
+    private static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
     private final RegistryService registryService;
+    private final IdempotencyService idempotencyService;
+    private final UserTotalService userTotalService;
+    private final RegistryHistory registryHistory;
+    private final BalanceEventBus balanceEventBus;
+    private final long eventStreamTimeoutMillis;
 
-    public RegistryController(RegistryService registryService) {
+    public RegistryController(RegistryService registryService, IdempotencyService idempotencyService,
+                              UserTotalService userTotalService, RegistryHistory registryHistory,
+                              BalanceEventBus balanceEventBus,
+                              @Value("${budgeting.events.timeout-ms:1800000}") long eventStreamTimeoutMillis) {
         this.registryService = registryService;
+        this.idempotencyService = idempotencyService;
+        this.userTotalService = userTotalService;
+        this.registryHistory = registryHistory;
+        this.balanceEventBus = balanceEventBus;
+        this.eventStreamTimeoutMillis = eventStreamTimeoutMillis;
+    }
+
+    /**
+     * Writes the pre-serialized listing as is, or answers 304 when the client already holds its ETag.
+     */
+    @GetMapping(value = "{userId}/registry", produces = MediaType.APPLICATION_JSON_VALUE)
+    @RateLimited(RateLimit.READ)
+    public ResponseEntity<byte[]> getRegistries(@PathVariable String userId, WebRequest request) {
+        RegistryListing listing = registryService.findListingByUserId(userId);
+
+        if (request.checkNotModified(listing.getEtag())) {
+            return null;
+        }
+
+        return ResponseEntity.ok()
+                .eTag(listing.getEtag())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(listing.getBody());
+    }
+
+    @GetMapping(value = "{userId}/registry", params = "limit", produces = MediaType.APPLICATION_JSON_VALUE)
+    @RateLimited(RateLimit.READ)
+    public ResponseEntity<RegistryPage> getRegistryPage(@PathVariable String userId,
+                                                        @RequestParam(required = false) String after,
+                                                        @RequestParam int limit) {
+        return ResponseEntity.ok(registryService.findPageByUserId(userId, after, limit));
+    }
+
+    /**
+     * Streams every registry of the user as one JSON document per line, for users with too many registries to list at once.
+     */
+    @GetMapping(value = "{userId}/registry", produces = APPLICATION_NDJSON_VALUE)
+    @RateLimited(RateLimit.READ)
+    public ResponseEntity<StreamingResponseBody> streamRegistries(@PathVariable String userId) {
+        registryService.checkUserHasRegistries(userId);
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+                .body(outputStream -> registryService.streamByUserId(userId, outputStream));
+    }
+
+    /**
+     * Pushes a {@code balance} event with the registry id and its new amount after every committed recharge or
+     * transfer of the user, instead of the client polling the listing. The stream ends after {@code timeout-ms},
+     * clients reconnect and re-list.
+     */
+    @GetMapping(value = "{userId}/registry/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @RateLimited(RateLimit.READ)
+    public SseEmitter streamBalanceChanges(@PathVariable String userId) {
+        registryService.checkUserHasRegistries(userId);
+
+        SseEmitter emitter = new SseEmitter(eventStreamTimeoutMillis);
+        BalanceEventBus.Subscription subscription = balanceEventBus.subscribe(userId, new BalanceEventBus.DeltaSink() {
+            @Override
+            public void send(BalanceDelta delta) throws IOException {
+                emitter.send(SseEmitter.event().name("balance").data(delta, MediaType.APPLICATION_JSON));
+            }
+
+            @Override
+            public void close() {
+                emitter.complete();
+            }
+        });
+        emitter.onCompletion(subscription::cancel);
+        emitter.onTimeout(subscription::cancel);
+        emitter.onError(error -> subscription.cancel());
+        return emitter;
     }
 
-    @GetMapping("{userId}/registry")
-    public ResponseEntity<List<RegistryResponse>> getRegistries(@PathVariable String userId) {
-        return ResponseEntity.ok(ImmutableList.copyOf(registryService.findByUserId(userId)));
+    @GetMapping("{userId}/total")
+    @RateLimited(RateLimit.READ)
+    public ResponseEntity<UserTotalResponse> getTotal(@PathVariable String userId) {
+        return ResponseEntity.ok(userTotalService.findByUserId(userId));
+    }
+
+    @GetMapping("{userId}/total/check")
+    @RateLimited(RateLimit.READ)
+    public ResponseEntity<UserTotalCheck> checkTotal(@PathVariable String userId) {
+        return ResponseEntity.ok(userTotalService.check(userId));
+    }
+
+    @PostMapping("{userId}/total/rebuild")
+    @RateLimited(RateLimit.RECHARGE)
+    public ResponseEntity<UserTotalCheck> rebuildTotal(@PathVariable String userId) {
+        return ResponseEntity.ok(userTotalService.rebuild(userId));
+    }
+
+    /**
+     * Buckets of the registry overlapping {@code [from, to)}, both in epoch milliseconds; {@code to} defaults to now.
+     */
+    @GetMapping("{userId}/registry/{registryId}/history")
+    @RateLimited(RateLimit.READ)
+    public ResponseEntity<List<HistoryBucket>> getHistory(@PathVariable String userId,
+                                                          @PathVariable String registryId,
+                                                          @RequestParam(defaultValue = "DAY") HistoryResolution resolution,
+                                                          @RequestParam long from,
+                                                          @RequestParam(required = false) Long to) {
+        return ResponseEntity.ok(registryHistory.findBuckets(userId, registryId, resolution, from,
+                Objects.isNull(to) ? System.currentTimeMillis() : to));
     }
 
     @PostMapping("{userId}/registry/{registryId}/recharge")
+    @RateLimited(RateLimit.RECHARGE)
     public ResponseEntity recharge(@PathVariable String userId,
                                    @PathVariable String registryId,
+                                   @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
                                    @RequestBody @Valid RechargeRequest rechargeRequest) {
-        registryService.recharge(userId, registryId, rechargeRequest);
+        String request = IdempotencyService.describe(BalanceOperation.RECHARGE, registryId, null, rechargeRequest.getAmount());
+        idempotencyService.execute(userId, idempotencyKey, request, () -> registryService.recharge(userId, registryId, rechargeRequest));
         return ResponseEntity.ok().build();
     }
 
     @PostMapping("{userId}/registry/{registryId}/transfer")
+    @RateLimited(RateLimit.TRANSFER)
     public ResponseEntity transfer(@PathVariable String userId,
                                    @PathVariable String registryId,
+                                   @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
                                    @RequestBody @Valid TransferRequest transferRequest) {
-        registryService.transfer(userId, registryId, transferRequest);
+        String request = IdempotencyService.describe(BalanceOperation.TRANSFER_OUT, registryId,
+                transferRequest.getTargetRegistryId(), transferRequest.getAmount());
+        idempotencyService.execute(userId, idempotencyKey, request, () -> registryService.transfer(userId, registryId, transferRequest));
         return ResponseEntity.ok().build();
     }
+
+    @PostMapping("{userId}/registry/transfers")
+    @RateLimited(RateLimit.TRANSFER)
+    public ResponseEntity<BatchTransferResponse> transferBatch(@PathVariable String userId,
+                                                               @RequestBody @Valid BatchTransferRequest batchTransferRequest) {
+        return ResponseEntity.ok(registryService.transferBatch(userId, batchTransferRequest));
+    }
 }
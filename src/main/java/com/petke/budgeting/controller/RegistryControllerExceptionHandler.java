@@ -1,8 +1,13 @@
 package com.petke.budgeting.controller;
 
+import com.petke.budgeting.exception.ErrorCode;
 import com.petke.budgeting.exception.ErrorResponse;
 import com.petke.budgeting.exception.InvalidRequestException;
+import com.petke.budgeting.exception.RateLimitExceededException;
 import com.petke.budgeting.exception.RegistryNotFoundException;
+import com.petke.budgeting.exception.ServiceOverloadedException;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -20,6 +25,7 @@ import java.util.List;
 public class RegistryControllerExceptionHandler {
 
     private final static String MESSAGE_DELIMITER = ", ";
+    private final static String RETRY_AFTER_OVERLOAD = "1";
 
     @ExceptionHandler(RegistryNotFoundException.class)
     @ResponseStatus(HttpStatus.NOT_FOUND)
@@ -45,7 +51,7 @@ public class RegistryControllerExceptionHandler {
 
         return ResponseEntity
                 .status(HttpStatus.BAD_REQUEST)
-                .body(new ErrorResponse(exception, message, request, HttpStatus.BAD_REQUEST));
+                .body(new ErrorResponse(exception, ErrorCode.INVALID_REQUEST, message, request, HttpStatus.BAD_REQUEST));
     }
 
     @ExceptionHandler(InvalidRequestException.class)
@@ -55,4 +61,30 @@ public class RegistryControllerExceptionHandler {
                 .status(HttpStatus.BAD_REQUEST)
                 .body(new ErrorResponse(exception, request, HttpStatus.BAD_REQUEST));
     }
-}
\ No newline at end of file
+
+    @ExceptionHandler(RateLimitExceededException.class)
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    public ResponseEntity<ErrorResponse> handle(RateLimitExceededException exception, WebRequest request) {
+        return ResponseEntity
+                .status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(exception.getRetryAfterSeconds()))
+                .body(new ErrorResponse(exception, request, HttpStatus.TOO_MANY_REQUESTS));
+    }
+
+    @ExceptionHandler(ServiceOverloadedException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ResponseEntity<ErrorResponse> handle(ServiceOverloadedException exception, WebRequest request) {
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_OVERLOAD)
+                .body(new ErrorResponse(exception, request, HttpStatus.SERVICE_UNAVAILABLE));
+    }
+
+    @ExceptionHandler(TaskRejectedException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ResponseEntity<ErrorResponse> handle(TaskRejectedException exception, WebRequest request) {
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(new ErrorResponse(exception, ErrorCode.SERVICE_UNAVAILABLE, exception.getMessage(), request, HttpStatus.SERVICE_UNAVAILABLE));
+    }
+}
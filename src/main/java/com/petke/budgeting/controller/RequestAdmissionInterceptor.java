@@ -0,0 +1,126 @@
+package com.petke.budgeting.controller;
+
+import com.petke.budgeting.exception.RateLimitExceededException;
+import com.petke.budgeting.exception.ServiceOverloadedException;
+import com.petke.budgeting.service.RateLimit;
+import com.petke.budgeting.service.UserRateLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Rejects requests before they reach a controller: with 503 while {@code max-in-flight} requests are already being
+ * handled, {@code 0} meaning no limit, and with 429 once the user ran out of tokens for a {@link RateLimited} handler.
+ * A request is in flight while it holds a servlet thread, async requests leave once their work is queued.
+ */
+@Component
+public class RequestAdmissionInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String ADMITTED = RequestAdmissionInterceptor.class.getName() + ".admitted";
+    private static final String USER_ID = "userId";
+
+    private final UserRateLimiter rateLimiter;
+    private final int maxInFlight;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Map<RateLimit, Counter> rateLimited = new EnumMap<>(RateLimit.class);
+    private final Counter shed;
+
+    public RequestAdmissionInterceptor(UserRateLimiter rateLimiter,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${budgeting.load-shedding.max-in-flight:0}") int maxInFlight) {
+        this.rateLimiter = rateLimiter;
+        this.maxInFlight = maxInFlight;
+
+        for (RateLimit limit : RateLimit.values()) {
+            rateLimited.put(limit, rejected(meterRegistry, "rate-limit", limit.getLabel()));
+        }
+        this.shed = rejected(meterRegistry, "overload", "all");
+        Gauge.builder("budgeting.requests.in-flight", inFlight, AtomicInteger::get)
+                .description("Requests admitted and holding a servlet thread")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof HandlerMethod) || request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+
+        // Shed first, a request turned away by the overload must not cost the user a token.
+        if (maxInFlight > 0) {
+            if (inFlight.incrementAndGet() > maxInFlight) {
+                inFlight.decrementAndGet();
+                shed.increment();
+                throw new ServiceOverloadedException(maxInFlight);
+            }
+            request.setAttribute(ADMITTED, Boolean.TRUE);
+        }
+
+        RateLimited limited = ((HandlerMethod) handler).getMethodAnnotation(RateLimited.class);
+        if (Objects.nonNull(limited)) {
+            try {
+                acquire(request, limited.value());
+            } catch (RateLimitExceededException e) {
+                // afterCompletion is not called for an interceptor whose preHandle threw.
+                release(request);
+                throw e;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        release(request);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception exception) {
+        release(request);
+    }
+
+    private void acquire(HttpServletRequest request, RateLimit limit) {
+        @SuppressWarnings("unchecked")
+        Map<String, String> variables = (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        String userId = Objects.isNull(variables) ? null : variables.get(USER_ID);
+        if (Objects.isNull(userId)) {
+            return;
+        }
+
+        long waitNanos = rateLimiter.tryAcquire(userId, limit);
+        if (waitNanos > 0) {
+            rateLimited.get(limit).increment();
+            throw new RateLimitExceededException(userId, limit.getLabel(),
+                    Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1)));
+        }
+    }
+
+    private void release(HttpServletRequest request) {
+        if (Objects.nonNull(request.getAttribute(ADMITTED))) {
+            request.removeAttribute(ADMITTED);
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private static Counter rejected(MeterRegistry meterRegistry, String reason, String limit) {
+        return Counter.builder("budgeting.requests.rejected")
+                .description("Requests rejected before reaching a controller")
+                .tag("reason", reason)
+                .tag("limit", limit)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,18 @@
+package com.petke.budgeting.exception;
+
+import lombok.Getter;
+
+/**
+ * Expected rejection of a request, answered with its {@link ErrorCode}. Thrown on every invalid or unknown input,
+ * so it does not fill in a stack trace nor support suppressed exceptions: the throw site adds nothing to the response.
+ */
+@Getter
+public abstract class BudgetingException extends RuntimeException {
+
+    private final ErrorCode code;
+
+    protected BudgetingException(ErrorCode code, String message) {
+        super(message, null, false, false);
+        this.code = code;
+    }
+}
@@ -0,0 +1,17 @@
+package com.petke.budgeting.exception;
+
+/**
+ * Stable machine readable reason of an error response, clients should branch on it rather than on the message.
+ */
+public enum ErrorCode {
+
+    USER_NOT_FOUND,
+    REGISTRY_NOT_FOUND,
+    SOURCE_REGISTRY_NOT_FOUND,
+    TARGET_REGISTRY_NOT_FOUND,
+    INSUFFICIENT_FUNDS,
+    INVALID_REQUEST,
+    INVALID_HISTORY_RANGE,
+    RATE_LIMITED,
+    SERVICE_UNAVAILABLE
+}
@@ -1,38 +1,42 @@
 package com.petke.budgeting.exception;
 
-import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 import org.springframework.http.HttpStatus;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.context.request.WebRequest;
 
 @Data
 public class ErrorResponse {
 
+    private static final String URI_PREFIX = "uri=";
+
     private String error;
+    private ErrorCode code;
     private String message;
     private int status;
     private String path;
     private Long timestamp;
-    @JsonIgnore
-    private final String uri = "uri=";
 
-    public ErrorResponse(Exception exception, WebRequest request, HttpStatus status){
-        this.error = exception.getClass().getSimpleName();
-        this.message = exception.getMessage();
-        this.status = status.value();
-        this.path = getRequestPath(request);
-        this.timestamp = System.currentTimeMillis();
+    public ErrorResponse(BudgetingException exception, WebRequest request, HttpStatus status) {
+        this(exception, exception.getCode(), exception.getMessage(), request, status);
     }
 
-    public ErrorResponse(Exception exception, String message, WebRequest request, HttpStatus status){
+    public ErrorResponse(Exception exception, ErrorCode code, String message, WebRequest request, HttpStatus status) {
         this.error = exception.getClass().getSimpleName();
+        this.code = code;
         this.message = message;
         this.status = status.value();
         this.path = getRequestPath(request);
         this.timestamp = System.currentTimeMillis();
     }
 
-    private String getRequestPath(WebRequest request){
-        return request.getDescription(false).replace(uri, "");
+    /**
+     * The request URI, read directly from servlet requests instead of building their description and stripping it.
+     */
+    private static String getRequestPath(WebRequest request) {
+        if (request instanceof ServletWebRequest) {
+            return ((ServletWebRequest) request).getRequest().getRequestURI();
+        }
+        return request.getDescription(false).replace(URI_PREFIX, "");
     }
 }
@@ -1,8 +1,26 @@
 package com.petke.budgeting.exception;
 
-public class InvalidRequestException extends RuntimeException {
+public class InvalidRequestException extends BudgetingException {
 
     public InvalidRequestException(String message) {
-        super(message);
+        this(ErrorCode.INVALID_REQUEST, message);
+    }
+
+    public InvalidRequestException(ErrorCode code, String message) {
+        super(code, message);
+    }
+
+    public static InvalidRequestException insufficientFunds(Object sourceAmount, Object requestedAmount) {
+        return new InvalidRequestException(ErrorCode.INSUFFICIENT_FUNDS,
+                "Not enough funds for the transfer. Source amount: " + sourceAmount + ", requested transfer: " + requestedAmount);
+    }
+
+    public static InvalidRequestException emptyHistoryRange(long from, long to) {
+        return new InvalidRequestException(ErrorCode.INVALID_HISTORY_RANGE, "History range is empty: from " + from + ", to " + to);
+    }
+
+    public static InvalidRequestException historyRangeTooLong(int maxBuckets, Object resolution) {
+        return new InvalidRequestException(ErrorCode.INVALID_HISTORY_RANGE,
+                "History range spans more than " + maxBuckets + " " + resolution + " buckets");
     }
 }
@@ -0,0 +1,14 @@
+package com.petke.budgeting.exception;
+
+import lombok.Getter;
+
+@Getter
+public class RateLimitExceededException extends BudgetingException {
+
+    private final long retryAfterSeconds;
+
+    public RateLimitExceededException(String userId, String limit, long retryAfterSeconds) {
+        super(ErrorCode.RATE_LIMITED, "Too many " + limit + " requests for userId: '" + userId + "'");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
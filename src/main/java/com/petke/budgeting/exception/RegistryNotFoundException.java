@@ -1,8 +1,28 @@
 package com.petke.budgeting.exception;
 
-public class RegistryNotFoundException extends RuntimeException {
+public class RegistryNotFoundException extends BudgetingException {
 
     public RegistryNotFoundException(String message) {
-        super(message);
+        this(ErrorCode.REGISTRY_NOT_FOUND, message);
+    }
+
+    public RegistryNotFoundException(ErrorCode code, String message) {
+        super(code, message);
+    }
+
+    public static RegistryNotFoundException user(String userId) {
+        return new RegistryNotFoundException(ErrorCode.USER_NOT_FOUND, "No registries found for userId: '" + userId + "'");
+    }
+
+    public static RegistryNotFoundException registry(String registryId, String userId) {
+        return new RegistryNotFoundException(ErrorCode.REGISTRY_NOT_FOUND, "Registry '" + registryId + "' not found for user: '" + userId + "'");
+    }
+
+    public static RegistryNotFoundException source(String registryId, String userId) {
+        return new RegistryNotFoundException(ErrorCode.SOURCE_REGISTRY_NOT_FOUND, "Source registry '" + registryId + "' not found for user: '" + userId + "'");
+    }
+
+    public static RegistryNotFoundException target(String registryId, String userId) {
+        return new RegistryNotFoundException(ErrorCode.TARGET_REGISTRY_NOT_FOUND, "Target registry '" + registryId + "' not found for user: '" + userId + "'");
     }
 }
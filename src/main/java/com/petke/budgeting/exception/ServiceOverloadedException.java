@@ -0,0 +1,16 @@
+package com.petke.budgeting.exception;
+
+public class ServiceOverloadedException extends BudgetingException {
+
+    public ServiceOverloadedException(int maxInFlight) {
+        this("More than " + maxInFlight + " requests in flight, retry later");
+    }
+
+    private ServiceOverloadedException(String message) {
+        super(ErrorCode.SERVICE_UNAVAILABLE, message);
+    }
+
+    public static ServiceOverloadedException subscriptions(int maxSubscriptions) {
+        return new ServiceOverloadedException("More than " + maxSubscriptions + " open event streams, retry later");
+    }
+}
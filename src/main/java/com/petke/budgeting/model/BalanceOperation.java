@@ -0,0 +1,7 @@
+package com.petke.budgeting.model;
+
+public enum BalanceOperation {
+    RECHARGE,
+    TRANSFER_IN,
+    TRANSFER_OUT
+}
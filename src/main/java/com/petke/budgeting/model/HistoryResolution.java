@@ -0,0 +1,33 @@
+package com.petke.budgeting.model;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Width of a history bucket. Buckets are aligned to UTC and identified by their start in epoch milliseconds.
+ */
+public enum HistoryResolution {
+    HOUR(ChronoUnit.HOURS),
+    DAY(ChronoUnit.DAYS),
+    MONTH(ChronoUnit.MONTHS);
+
+    private final ChronoUnit unit;
+
+    HistoryResolution(ChronoUnit unit) {
+        this.unit = unit;
+    }
+
+    public long bucketStart(long epochMillis) {
+        ZonedDateTime time = Instant.ofEpochMilli(epochMillis).atZone(ZoneOffset.UTC);
+        ZonedDateTime start = unit == ChronoUnit.MONTHS
+                ? time.truncatedTo(ChronoUnit.DAYS).withDayOfMonth(1)
+                : time.truncatedTo(unit);
+        return start.toInstant().toEpochMilli();
+    }
+
+    public long nextBucketStart(long bucketStart) {
+        return Instant.ofEpochMilli(bucketStart).atZone(ZoneOffset.UTC).plus(1, unit).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,43 @@
+package com.petke.budgeting.model;
+
+import com.petke.budgeting.exception.ErrorCode;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+
+/**
+ * Outcome of a request sent with an {@code Idempotency-Key}, kept so a retry after a restart is answered the same way.
+ * No error type means the request succeeded, records written before error codes existed have none.
+ */
+@Getter
+@Entity
+@Immutable
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class IdempotencyRecord {
+
+    @Id
+    private String id;
+    private String userId;
+    private String fingerprint;
+    private String errorType;
+    @Enumerated(EnumType.STRING)
+    private ErrorCode errorCode;
+    private String errorMessage;
+    private Long createdAt;
+
+    public IdempotencyRecord(String id, String userId, String fingerprint, String errorType, ErrorCode errorCode, String errorMessage) {
+        this.id = id;
+        this.userId = userId;
+        this.fingerprint = fingerprint;
+        this.errorType = errorType;
+        this.errorCode = errorCode;
+        this.errorMessage = errorMessage;
+        this.createdAt = System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,52 @@
+package com.petke.budgeting.model;
+
+import com.petke.budgeting.model.event.BalanceChangedEvent;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.math.BigDecimal;
+
+/**
+ * Immutable record of a single balance change. Entries with a {@code balance} act as snapshots,
+ * the registry balance is the latest snapshot plus the amounts of every entry appended after it.
+ */
+@Getter
+@Entity
+@Immutable
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Table(indexes = @Index(name = "idx_ledger_entry_registry_sequence", columnList = "registryId, sequence"))
+public class LedgerEntry {
+
+    @Id
+    @GeneratedValue(generator = "time-ordered")
+    @GenericGenerator(name = "time-ordered", strategy = TimeOrderedIdGenerator.STRATEGY)
+    private String id;
+    private long sequence;
+    private String registryId;
+    private String userId;
+    @Enumerated(EnumType.STRING)
+    private BalanceOperation operation;
+    private BigDecimal amount;
+    private BigDecimal balance;
+    private Long createdAt;
+
+    public LedgerEntry(long sequence, BalanceChangedEvent event) {
+        this.sequence = sequence;
+        this.registryId = event.getRegistryId();
+        this.userId = event.getUserId();
+        this.operation = event.getOperation();
+        this.amount = event.getAmount();
+        this.balance = event.getBalance();
+        this.createdAt = event.getTimestamp();
+    }
+}
@@ -0,0 +1,23 @@
+package com.petke.budgeting.model;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * Stores {@link Money} in the {@code decimal} amount columns.
+ */
+@Converter
+public class MoneyConverter implements AttributeConverter<Money, BigDecimal> {
+
+    @Override
+    public BigDecimal convertToDatabaseColumn(Money money) {
+        return Objects.isNull(money) ? null : money.toBigDecimal();
+    }
+
+    @Override
+    public Money convertToEntityAttribute(BigDecimal amount) {
+        return Objects.isNull(amount) ? null : Money.of(amount);
+    }
+}
@@ -4,9 +4,11 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.annotations.GenericGenerator;
 
+import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Version;
 import java.math.BigDecimal;
 
 @Data
@@ -15,16 +17,19 @@ import java.math.BigDecimal;
 public class Registry {
 
     @Id
-    @GeneratedValue(generator="system-uuid")
-    @GenericGenerator(name="system-uuid", strategy = "uuid")
+    @GeneratedValue(generator = "time-ordered")
+    @GenericGenerator(name = "time-ordered", strategy = TimeOrderedIdGenerator.STRATEGY)
     private String id;
     private String label;
     private String userId;
-    private BigDecimal amount;
+    @Convert(converter = MoneyConverter.class)
+    private Money amount;
+    @Version
+    private Long version;
 
     public Registry(String label, String userId, BigDecimal amount) {
         this.label = label;
         this.userId = userId;
-        this.amount = amount;
+        this.amount = Money.of(amount);
     }
 }
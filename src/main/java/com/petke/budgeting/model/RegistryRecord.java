@@ -0,0 +1,24 @@
+package com.petke.budgeting.model;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * One row of a bulk registry import or export, a CSV line or an NDJSON document.
+ * A missing {@code id} is generated on import.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonPropertyOrder({"id", "label", "userId", "amount"})
+public class RegistryRecord {
+
+    private String id;
+    private String label;
+    private String userId;
+    private BigDecimal amount;
+}
@@ -0,0 +1,23 @@
+package com.petke.budgeting.model;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Convert;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * Sum of the amounts of all registries of a user, maintained by {@code UserTotalService}.
+ */
+@Getter
+@Entity
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class UserTotal {
+
+    @Id
+    private String userId;
+    @Convert(converter = MoneyConverter.class)
+    private Money total;
+}
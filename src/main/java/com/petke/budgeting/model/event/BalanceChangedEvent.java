@@ -0,0 +1,33 @@
+package com.petke.budgeting.model.event;
+
+import com.petke.budgeting.model.BalanceOperation;
+import lombok.Value;
+
+import java.math.BigDecimal;
+
+/**
+ * Published once per registry touched by a recharge or transfer. {@code amount} is the signed change,
+ * {@code balance} the registry balance after it, or {@code null} when the writer does not know it.
+ */
+@Value
+public class BalanceChangedEvent {
+
+    String userId;
+    String registryId;
+    BalanceOperation operation;
+    BigDecimal amount;
+    BigDecimal balance;
+    long timestamp;
+
+    public static BalanceChangedEvent recharge(String userId, String registryId, BigDecimal amount, BigDecimal balance) {
+        return new BalanceChangedEvent(userId, registryId, BalanceOperation.RECHARGE, amount, balance, System.currentTimeMillis());
+    }
+
+    public static BalanceChangedEvent transferOut(String userId, String registryId, BigDecimal amount, BigDecimal balance) {
+        return new BalanceChangedEvent(userId, registryId, BalanceOperation.TRANSFER_OUT, amount.negate(), balance, System.currentTimeMillis());
+    }
+
+    public static BalanceChangedEvent transferIn(String userId, String registryId, BigDecimal amount, BigDecimal balance) {
+        return new BalanceChangedEvent(userId, registryId, BalanceOperation.TRANSFER_IN, amount, balance, System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,6 @@
+package com.petke.budgeting.model.request;
+
+public enum BatchTransferMode {
+    ALL_OR_NOTHING,
+    BEST_EFFORT
+}
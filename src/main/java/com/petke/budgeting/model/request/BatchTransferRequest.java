@@ -0,0 +1,19 @@
+package com.petke.budgeting.model.request;
+
+import lombok.Data;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import java.util.List;
+
+@Data
+public class BatchTransferRequest {
+
+    @NotNull(message = "Mode can not be null")
+    private BatchTransferMode mode = BatchTransferMode.ALL_OR_NOTHING;
+
+    @Valid
+    @NotEmpty(message = "Transfers can not be empty")
+    private List<BatchTransferItem> transfers;
+}
@@ -0,0 +1,14 @@
+package com.petke.budgeting.model.response;
+
+import com.petke.budgeting.model.Money;
+import lombok.Value;
+
+/**
+ * New balance of a registry, pushed to the event streams of its user.
+ */
+@Value
+public class BalanceDelta {
+
+    String id;
+    Money amount;
+}
@@ -0,0 +1,12 @@
+package com.petke.budgeting.model.response;
+
+import lombok.Value;
+
+import java.util.List;
+
+@Value
+public class BatchTransferResponse {
+
+    boolean applied;
+    List<TransferResult> results;
+}
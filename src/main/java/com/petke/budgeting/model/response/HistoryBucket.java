@@ -0,0 +1,18 @@
+package com.petke.budgeting.model.response;
+
+import com.petke.budgeting.model.Money;
+import lombok.Value;
+
+/**
+ * Balance changes of a registry within one bucket starting at {@code start} (epoch milliseconds, UTC).
+ * {@code balance} is the balance after the last change in the bucket.
+ */
+@Value
+public class HistoryBucket {
+
+    long start;
+    Money inflow;
+    Money outflow;
+    Money balance;
+    long operations;
+}
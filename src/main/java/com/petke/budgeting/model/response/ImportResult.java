@@ -0,0 +1,14 @@
+package com.petke.budgeting.model.response;
+
+import lombok.Value;
+
+/**
+ * {@code skipped} counts rows whose id already existed.
+ */
+@Value
+public class ImportResult {
+
+    long imported;
+    long skipped;
+    long elapsedMillis;
+}
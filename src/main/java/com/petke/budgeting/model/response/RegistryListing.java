@@ -0,0 +1,16 @@
+package com.petke.budgeting.model.response;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Registries of a user together with their serialized JSON body and its ETag.
+ */
+@Value
+public class RegistryListing {
+
+    List<RegistryResponse> registries;
+    byte[] body;
+    String etag;
+}
@@ -0,0 +1,18 @@
+package com.petke.budgeting.model.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * One page of a user's registries ordered by id. {@code nextCursor} is the {@code after} parameter of the next page,
+ * absent on the last one.
+ */
+@Value
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class RegistryPage {
+
+    List<RegistryResponse> registries;
+    String nextCursor;
+}
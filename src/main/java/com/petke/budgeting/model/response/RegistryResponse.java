@@ -1,17 +1,18 @@
 package com.petke.budgeting.model.response;
 
+import com.petke.budgeting.model.Money;
 import com.petke.budgeting.model.Registry;
+import lombok.AllArgsConstructor;
 import lombok.Data;
 
-import java.math.BigDecimal;
-
 
 @Data
+@AllArgsConstructor
 public class RegistryResponse {
 
     private String id;
     private String label;
-    private BigDecimal amount;
+    private Money amount;
 
     public RegistryResponse(Registry registry) {
         this.id = registry.getId();
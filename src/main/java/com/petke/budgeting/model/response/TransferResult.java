@@ -0,0 +1,17 @@
+package com.petke.budgeting.model.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.petke.budgeting.exception.ErrorCode;
+import lombok.Value;
+
+@Value
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TransferResult {
+
+    int index;
+    String sourceRegistryId;
+    String targetRegistryId;
+    TransferStatus status;
+    ErrorCode code;
+    String message;
+}
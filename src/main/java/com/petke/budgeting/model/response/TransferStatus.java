@@ -0,0 +1,7 @@
+package com.petke.budgeting.model.response;
+
+public enum TransferStatus {
+    APPLIED,
+    REJECTED,
+    SKIPPED
+}
@@ -0,0 +1,16 @@
+package com.petke.budgeting.model.response;
+
+import com.petke.budgeting.model.Money;
+import lombok.Value;
+
+/**
+ * The maintained total of a user next to the sum of its registry rows.
+ */
+@Value
+public class UserTotalCheck {
+
+    String userId;
+    Money total;
+    Money registrySum;
+    boolean consistent;
+}
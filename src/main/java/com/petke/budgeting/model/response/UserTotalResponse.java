@@ -0,0 +1,11 @@
+package com.petke.budgeting.model.response;
+
+import com.petke.budgeting.model.Money;
+import lombok.Value;
+
+@Value
+public class UserTotalResponse {
+
+    String userId;
+    Money total;
+}
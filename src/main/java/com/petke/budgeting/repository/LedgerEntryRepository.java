@@ -0,0 +1,23 @@
+package com.petke.budgeting.repository;
+
+import com.petke.budgeting.model.LedgerEntry;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Component
+public interface LedgerEntryRepository extends CrudRepository<LedgerEntry, String> {
+
+    List<LedgerEntry> findByRegistryIdOrderBySequence(String registryId);
+    LedgerEntry findFirstByRegistryIdAndBalanceIsNotNullOrderBySequenceDesc(String registryId);
+
+    @Query("select coalesce(sum(e.amount), 0) from LedgerEntry e where e.registryId = :registryId and e.sequence > :sequence")
+    BigDecimal sumAmountAfter(@Param("registryId") String registryId, @Param("sequence") long sequence);
+
+    @Query("select coalesce(max(e.sequence), 0) from LedgerEntry e")
+    long findMaxSequence();
+}
@@ -1,15 +1,82 @@
 package com.petke.budgeting.repository;
 
+import com.petke.budgeting.model.Money;
 import com.petke.budgeting.model.Registry;
+import com.petke.budgeting.model.response.RegistryResponse;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Component;
 
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Component
 public interface RegistryRepository extends CrudRepository<Registry, String> {
 
     List<Registry> findByUserId(String userId);
     Registry findByIdAndUserId(String id, String userId);
+    List<Registry> findByUserIdAndIdIn(String userId, Collection<String> ids);
+
+    /**
+     * Listing queries select straight into {@link RegistryResponse}, no entity is hydrated, managed or snapshotted.
+     */
+    String SELECT_RESPONSE = "select new com.petke.budgeting.model.response.RegistryResponse(r.id, r.label, r.amount) from Registry r";
+
+    @Query(SELECT_RESPONSE + " where r.userId = :userId order by r.id")
+    List<RegistryResponse> findResponsesByUserId(@Param("userId") String userId);
+
+    @Query(SELECT_RESPONSE + " where r.userId = :userId order by r.id")
+    List<RegistryResponse> findResponsePageByUserId(@Param("userId") String userId, Pageable pageable);
+
+    @Query(SELECT_RESPONSE + " where r.userId = :userId and r.id > :after order by r.id")
+    List<RegistryResponse> findResponsePageByUserIdAfter(@Param("userId") String userId, @Param("after") String after, Pageable pageable);
+
+    /**
+     * Scrolls the registries of the user, must be consumed and closed within a transaction.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(SELECT_RESPONSE + " where r.userId = :userId order by r.id")
+    Stream<RegistryResponse> streamResponsesByUserId(@Param("userId") String userId);
+
+    boolean existsByUserId(String userId);
+
+    @Query(value = "SELECT COALESCE(SUM(amount), 0) FROM registry WHERE user_id = :userId", nativeQuery = true)
+    BigDecimal sumAmountByUserId(@Param("userId") String userId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Registry findLockedByIdAndUserId(String id, String userId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<Registry> findLockedByUserIdAndIdInOrderById(String userId, Collection<String> ids);
+
+    boolean existsByIdAndUserId(String id, String userId);
+
+    @Query("select r.amount from Registry r where r.id = :id and r.userId = :userId")
+    Money findAmountByIdAndUserId(@Param("id") String id, @Param("userId") String userId);
+
+    /**
+     * @return number of updated rows, 0 if the registry was not found
+     */
+    @Modifying
+    @Query("update Registry r set r.amount = r.amount + :amount, r.version = r.version + 1 where r.id = :id and r.userId = :userId")
+    int credit(@Param("id") String id, @Param("userId") String userId, @Param("amount") Money amount);
 
+    /**
+     * @return number of updated rows, 0 if the registry was not found or has not enough funds
+     */
+    @Modifying
+    @Query("update Registry r set r.amount = r.amount - :amount, r.version = r.version + 1"
+            + " where r.id = :id and r.userId = :userId and r.amount >= :amount")
+    int debit(@Param("id") String id, @Param("userId") String userId, @Param("amount") Money amount);
 }
@@ -0,0 +1,127 @@
+package com.petke.budgeting.repository;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.IntConsumer;
+
+/**
+ * Maps users to the shards of {@code budgeting.sharding.urls} with consistent hashing: every shard owns
+ * {@code virtual-nodes} points on a hash ring and a user belongs to the first point at or after the hash of its id.
+ * A shard appended to the list takes over about 1/N of the users and moves nobody else, see
+ * {@link com.petke.budgeting.service.ShardRebalancer}. Shards are identified by their position, so only append.
+ * Without urls there is a single shard and {@link #on} just runs the work.
+ * <p>
+ * The shard work runs on is kept per thread and read by {@link ShardRoutingDataSource} when a transaction takes a
+ * connection, so it has to be set before the transaction starts and can not change inside one.
+ */
+@Component
+public class ShardRouter {
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private final int count;
+    private final long[] points;
+    private final int[] owners;
+
+    public ShardRouter(@Value("${budgeting.sharding.urls:}") List<String> urls,
+                       @Value("${budgeting.sharding.virtual-nodes:128}") int virtualNodes) {
+        this.count = Math.max(urls.size(), 1);
+
+        long[][] ring = new long[count * virtualNodes][];
+        for (int shard = 0; shard < count; shard++) {
+            for (int node = 0; node < virtualNodes; node++) {
+                ring[shard * virtualNodes + node] = new long[]{hash("shard-" + shard + "#" + node), shard};
+            }
+        }
+        Arrays.sort(ring, (first, second) -> Long.compare(first[0], second[0]));
+
+        this.points = Arrays.stream(ring).mapToLong(point -> point[0]).toArray();
+        this.owners = Arrays.stream(ring).mapToInt(point -> (int) point[1]).toArray();
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public int shardOf(String userId) {
+        if (count == 1) {
+            return 0;
+        }
+
+        int index = Arrays.binarySearch(points, hash(userId));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    /**
+     * Runs the work on the given shard, restoring the shard of the caller afterwards.
+     *
+     * @throws IllegalStateException when asked to leave the shard of a running transaction
+     */
+    public <T, E extends Throwable> T on(int shard, ShardWork<T, E> work) throws E {
+        if (count == 1) {
+            return work.run();
+        }
+
+        Integer previous = CURRENT.get();
+        if (Objects.nonNull(previous) && previous != shard && TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException(String.format("Can not switch from shard %d to shard %d inside a transaction", previous, shard));
+        }
+
+        CURRENT.set(shard);
+        try {
+            return work.run();
+        } finally {
+            if (Objects.isNull(previous)) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    public <T, E extends Throwable> T onShardOf(String userId, ShardWork<T, E> work) throws E {
+        return on(shardOf(userId), work);
+    }
+
+    /**
+     * Runs the action once on every shard, one after the other.
+     */
+    public void forEach(IntConsumer action) {
+        for (int shard = 0; shard < count; shard++) {
+            int current = shard;
+            on(shard, () -> {
+                action.accept(current);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * @return the shard set for the current thread, {@code null} outside of {@link #on}
+     */
+    static Integer current() {
+        return CURRENT.get();
+    }
+
+    private static long hash(String value) {
+        return HASH.hashString(value, StandardCharsets.UTF_8).asLong();
+    }
+
+    @FunctionalInterface
+    public interface ShardWork<T, E extends Throwable> {
+
+        T run() throws E;
+    }
+}
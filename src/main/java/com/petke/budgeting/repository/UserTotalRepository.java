@@ -0,0 +1,53 @@
+package com.petke.budgeting.repository;
+
+import com.petke.budgeting.model.Money;
+import com.petke.budgeting.model.UserTotal;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+
+@Component
+public interface UserTotalRepository extends CrudRepository<UserTotal, String> {
+
+    /**
+     * @return number of updated rows, 0 if the total of the user was never initialized
+     */
+    @Modifying
+    @Query("update UserTotal t set t.total = t.total + :amount where t.userId = :userId")
+    int add(@Param("userId") String userId, @Param("amount") Money amount);
+
+    /**
+     * Creates the total of the user from the current registry rows, unless a concurrent transaction created it first.
+     *
+     * @return number of inserted rows
+     */
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO user_total (user_id, total) SELECT :userId, COALESCE(SUM(amount), 0) FROM registry WHERE user_id = :userId",
+            nativeQuery = true)
+    int initialize(@Param("userId") String userId);
+
+    /**
+     * Creates the total of the user with the given amount, unless a concurrent transaction created it first.
+     *
+     * @return number of inserted rows
+     */
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO user_total (user_id, total) VALUES (:userId, :total)", nativeQuery = true)
+    int create(@Param("userId") String userId, @Param("total") BigDecimal total);
+
+    @Modifying
+    @Query("update UserTotal t set t.total = :total where t.userId = :userId")
+    int set(@Param("userId") String userId, @Param("total") Money total);
+
+    /**
+     * Recomputes the total of the user from the current registry rows.
+     */
+    @Modifying
+    @Query(value = "UPDATE user_total SET total = (SELECT COALESCE(SUM(amount), 0) FROM registry WHERE user_id = :userId) WHERE user_id = :userId",
+            nativeQuery = true)
+    int rebuild(@Param("userId") String userId);
+}
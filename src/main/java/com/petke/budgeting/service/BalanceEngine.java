@@ -0,0 +1,321 @@
+package com.petke.budgeting.service;
+
+import com.petke.budgeting.exception.InvalidRequestException;
+import com.petke.budgeting.exception.RegistryNotFoundException;
+import com.petke.budgeting.model.Money;
+import com.petke.budgeting.model.Registry;
+import com.petke.budgeting.model.event.BalanceChangedEvent;
+import com.petke.budgeting.model.request.BatchTransferItem;
+import com.petke.budgeting.model.request.BatchTransferRequest;
+import com.petke.budgeting.model.response.BatchTransferResponse;
+import com.petke.budgeting.repository.RegistryRepository;
+import com.petke.budgeting.repository.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps registry balances in memory and writes them back to the {@code registry} table in batches.
+ * Every balance is guarded by its own lock, transfers take all locks they need ordered by registry id,
+ * so two opposite transfers can never deadlock. A change keeps its locks until the caller's transaction completes
+ * and only lands in memory if it commits, like a row lock. With shards every flush writes each shard its own batch.
+ * <p>
+ * Balances nobody changed or locked for {@code idle-eviction-ms} and written back already are dropped by the flush,
+ * the next change loads them again, so memory follows the active registries rather than every one ever touched.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "budgeting.balance-engine.enabled", havingValue = "true")
+public class BalanceEngine {
+
+    private static final String UPDATE_AMOUNT = "UPDATE registry SET amount = ?, version = version + 1 WHERE id = ?";
+
+    private final RegistryRepository registryRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ShardRouter shardRouter;
+    private final ConcurrentMap<String, Balance> balances = new ConcurrentHashMap<>();
+    private final Set<String> dirtyRegistryIds = ConcurrentHashMap.newKeySet();
+    private final long idleEvictionMillis;
+
+    public BalanceEngine(RegistryRepository registryRepository, JdbcTemplate jdbcTemplate, ApplicationEventPublisher eventPublisher,
+                         ShardRouter shardRouter,
+                         @Value("${budgeting.balance-engine.idle-eviction-ms:60000}") long idleEvictionMillis) {
+        this.registryRepository = registryRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.shardRouter = shardRouter;
+        this.idleEvictionMillis = idleEvictionMillis;
+    }
+
+    public void recharge(String userId, String registryId, Money amount) {
+        TreeMap<String, Balance> locked = findAndLock(userId, List.of(registryId));
+        Balance balance = locked.get(registryId);
+
+        if (Objects.isNull(balance)) {
+            throw RegistryNotFoundException.registry(registryId, userId);
+        }
+
+        Money newAmount = balance.amount.add(amount);
+        apply(locked, Map.of(registryId, newAmount));
+        eventPublisher.publishEvent(BalanceChangedEvent.recharge(userId, registryId, amount.toBigDecimal(), newAmount.toBigDecimal()));
+    }
+
+    public void transfer(String userId, String registryId, String targetRegistryId, Money amount) {
+        TreeMap<String, Balance> locked = findAndLock(userId, List.of(registryId, targetRegistryId));
+        Balance source = locked.get(registryId);
+        Balance target = locked.get(targetRegistryId);
+
+        try {
+            if (Objects.isNull(source)) {
+                throw RegistryNotFoundException.source(registryId, userId);
+            }
+
+            if (Objects.isNull(target)) {
+                throw RegistryNotFoundException.target(targetRegistryId, userId);
+            }
+
+            checkFunds(source, amount);
+        } catch (RuntimeException e) {
+            unlockAll(locked);
+            throw e;
+        }
+        Money sourceAmount = source.amount.subtract(amount);
+        Money targetAmount = target.amount.add(amount);
+        apply(locked, Map.of(registryId, sourceAmount, targetRegistryId, targetAmount));
+        eventPublisher.publishEvent(BalanceChangedEvent.transferOut(userId, registryId, amount.toBigDecimal(), sourceAmount.toBigDecimal()));
+        eventPublisher.publishEvent(BalanceChangedEvent.transferIn(userId, targetRegistryId, amount.toBigDecimal(), targetAmount.toBigDecimal()));
+    }
+
+    public BatchTransferResponse transferBatch(String userId, BatchTransferRequest batchTransferRequest) {
+        List<String> registryIds = new ArrayList<>();
+        for (BatchTransferItem item : batchTransferRequest.getTransfers()) {
+            registryIds.add(item.getSourceRegistryId());
+            registryIds.add(item.getTargetRegistryId());
+        }
+
+        BatchTransferPlan plan;
+        TreeMap<String, Balance> locked = findAndLock(userId, registryIds);
+        try {
+            Map<String, Money> balances = new HashMap<>();
+            locked.forEach((registryId, balance) -> balances.put(registryId, balance.amount));
+
+            plan = BatchTransferPlan.of(userId, batchTransferRequest, balances);
+        } catch (RuntimeException e) {
+            unlockAll(locked);
+            throw e;
+        }
+
+        if (!plan.getResponse().isApplied()) {
+            unlockAll(locked);
+            return plan.getResponse();
+        }
+
+        apply(locked, plan.getBalances());
+        plan.getEvents().forEach(eventPublisher::publishEvent);
+
+        return plan.getResponse();
+    }
+
+    /**
+     * Returns the committed in-memory balance of the registry if the engine holds it, the persisted one otherwise.
+     * Never waits for a change in progress.
+     */
+    public Money currentAmount(String registryId, Money persistedAmount) {
+        Balance balance = balances.get(registryId);
+        return Objects.isNull(balance) ? persistedAmount : balance.amount;
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${budgeting.balance-engine.flush-interval-ms:200}")
+    public synchronized void flush() {
+        RuntimeException failure = null;
+        if (!dirtyRegistryIds.isEmpty()) {
+            failure = write();
+        }
+        evictIdle();
+
+        if (Objects.nonNull(failure)) {
+            throw failure;
+        }
+    }
+
+    /**
+     * @return the failure of a shard whose balances stay dirty, if any
+     */
+    private RuntimeException write() {
+        Map<Integer, List<Object[]>> updates = new HashMap<>();
+        for (String registryId : dirtyRegistryIds) {
+            // Removing before reading means a concurrent change re-marks the registry for the next flush.
+            dirtyRegistryIds.remove(registryId);
+            Balance balance = balances.get(registryId);
+            updates.computeIfAbsent(shardRouter.shardOf(balance.userId), shard -> new ArrayList<>())
+                    .add(new Object[]{balance.amount.toBigDecimal(), registryId});
+        }
+
+        RuntimeException failure = null;
+        for (Map.Entry<Integer, List<Object[]>> shardUpdates : updates.entrySet()) {
+            try {
+                shardRouter.on(shardUpdates.getKey(), () -> jdbcTemplate.batchUpdate(UPDATE_AMOUNT, shardUpdates.getValue()));
+                log.debug("Flushed {} registry balances of shard {}", shardUpdates.getValue().size(), shardUpdates.getKey());
+            } catch (RuntimeException e) {
+                // Re-marked registries are written by the next flush, with whatever balance they have by then.
+                shardUpdates.getValue().forEach(update -> dirtyRegistryIds.add((String) update[1]));
+                log.warn("Failed to flush {} registry balances of shard {}", shardUpdates.getValue().size(), shardUpdates.getKey());
+                failure = e;
+            }
+        }
+        return failure;
+    }
+
+    /**
+     * Drops balances idle for {@code idle-eviction-ms} whose last change reached the table. One held or dirty is
+     * kept, so no change in progress or not written back is lost.
+     */
+    private void evictIdle() {
+        long idleSince = System.currentTimeMillis() - idleEvictionMillis;
+        balances.forEach((registryId, balance) -> {
+            if (balance.lastUsed >= idleSince || !balance.lock.tryLock()) {
+                return;
+            }
+
+            try {
+                if (!dirtyRegistryIds.contains(registryId)) {
+                    balance.evicted = true;
+                    balances.remove(registryId, balance);
+                }
+            } finally {
+                balance.lock.unlock();
+            }
+        });
+    }
+
+    /**
+     * Locks the balances of the registries the user owns ordered by id, unknown ones are left out. A balance evicted
+     * between finding and locking it is found again, so changes never land on a dropped copy.
+     */
+    private TreeMap<String, Balance> findAndLock(String userId, Collection<String> registryIds) {
+        while (true) {
+            TreeMap<String, Balance> locked = new TreeMap<>();
+            for (String registryId : registryIds) {
+                Balance balance = find(registryId, userId);
+
+                if (Objects.nonNull(balance)) {
+                    locked.put(registryId, balance);
+                }
+            }
+
+            lockAll(locked);
+            if (locked.values().stream().noneMatch(balance -> balance.evicted)) {
+                return locked;
+            }
+            unlockAll(locked);
+        }
+    }
+
+    private Balance find(String registryId, String userId) {
+        Balance balance = balances.get(registryId);
+
+        if (Objects.isNull(balance)) {
+            Registry registry = registryRepository.findByIdAndUserId(registryId, userId);
+
+            if (Objects.isNull(registry)) {
+                return null;
+            }
+
+            Balance loaded = new Balance(registry.getUserId(), registry.getAmount());
+            balance = Objects.requireNonNullElse(balances.putIfAbsent(registryId, loaded), loaded);
+        }
+
+        balance.lastUsed = System.currentTimeMillis();
+        return balance.userId.equals(userId) ? balance : null;
+    }
+
+    /**
+     * Sets the new amounts of the locked balances once the caller's transaction commits and unlocks them when it
+     * completes, right away without a transaction. A rolled back or retried transaction leaves the balances untouched,
+     * and nobody reads an amount that may still roll back. Takes over the locks of the caller.
+     */
+    private void apply(TreeMap<String, Balance> locked, Map<String, Money> amounts) {
+        Runnable commit = () -> {
+            amounts.forEach((registryId, amount) -> locked.get(registryId).amount = amount);
+            dirtyRegistryIds.addAll(amounts.keySet());
+        };
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            try {
+                commit.run();
+            } finally {
+                unlockAll(locked);
+            }
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public int getOrder() {
+                // Before the after-commit listeners of the events, they read the new balances.
+                return Ordered.HIGHEST_PRECEDENCE;
+            }
+
+            @Override
+            public void afterCommit() {
+                commit.run();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                unlockAll(locked);
+            }
+        });
+    }
+
+    private static void lockAll(TreeMap<String, Balance> balances) {
+        balances.values().forEach(balance -> balance.lock.lock());
+    }
+
+    private static void unlockAll(TreeMap<String, Balance> balances) {
+        balances.descendingMap().values().forEach(balance -> balance.lock.unlock());
+    }
+
+    private void checkFunds(Balance source, Money amount) {
+        if (source.amount.isLessThan(amount)) {
+            throw InvalidRequestException.insufficientFunds(source.amount, amount);
+        }
+    }
+
+    private static final class Balance {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final String userId;
+        private volatile Money amount;
+        private volatile long lastUsed;
+        // Set under the lock once dropped from the balances.
+        private volatile boolean evicted;
+
+        private Balance(String userId, Money amount) {
+            this.userId = userId;
+            this.amount = amount;
+        }
+    }
+}
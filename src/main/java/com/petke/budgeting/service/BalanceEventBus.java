@@ -0,0 +1,285 @@
+package com.petke.budgeting.service;
+
+import com.petke.budgeting.exception.ServiceOverloadedException;
+import com.petke.budgeting.model.Money;
+import com.petke.budgeting.model.event.BalanceChangedEvent;
+import com.petke.budgeting.model.response.BalanceDelta;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans committed balance changes out to the open event streams of their user. Publishing only queues the new balance
+ * of the registry in every subscription of the user; {@code dispatch-threads} threads write the queued deltas, so
+ * open streams cost memory but no thread.
+ * <p>
+ * Every subscription buffers at most {@code buffer-size} registries: a newer balance of a queued registry replaces
+ * the older one, and a slow consumer overflowing its buffer loses the oldest queued registry. A delta only says the
+ * balance changed to {@code amount}, clients that care about every registry re-list after reconnecting.
+ * <p>
+ * Dispatchers hand every write to a sender thread and wait {@code send-timeout-ms} for it at most. A stream whose
+ * write takes longer is cancelled and closed, its sender thread stays blocked until the connection gives up, but the
+ * dispatchers go on with the other streams. At most {@code sender-threads} writes are in flight: a send waits
+ * {@code send-timeout-ms} for one of them to finish, while all of them are stalled the stream is closed instead and
+ * its client reconnects once the stall clears.
+ */
+@Slf4j
+@Component
+public class BalanceEventBus {
+
+    private final ConcurrentMap<String, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private final AtomicInteger open = new AtomicInteger();
+    private final ExecutorService dispatcher;
+    private final ExecutorService senders;
+    private final Semaphore senderPermits;
+    private final long sendTimeoutMillis;
+    private final int bufferSize;
+    private final int maxSubscriptions;
+    private final Counter delivered;
+    private final Counter coalesced;
+    private final Counter dropped;
+    private final Counter stalled;
+    private final Counter rejected;
+
+    public BalanceEventBus(MeterRegistry meterRegistry,
+                           @Value("${budgeting.events.dispatch-threads:2}") int dispatchThreads,
+                           @Value("${budgeting.events.sender-threads:32}") int senderThreads,
+                           @Value("${budgeting.events.send-timeout-ms:5000}") long sendTimeoutMillis,
+                           @Value("${budgeting.events.buffer-size:64}") int bufferSize,
+                           @Value("${budgeting.events.max-subscriptions:100000}") int maxSubscriptions) {
+        // One queued drain per subscription at most, so the queue is bounded by max-subscriptions.
+        this.dispatcher = Executors.newFixedThreadPool(dispatchThreads, new CustomizableThreadFactory("events-"));
+        // Bounded by the permits: a thread only runs a write while holding one.
+        this.senders = Executors.newCachedThreadPool(new CustomizableThreadFactory("events-send-"));
+        this.senderPermits = new Semaphore(senderThreads);
+        this.sendTimeoutMillis = sendTimeoutMillis;
+        this.bufferSize = bufferSize;
+        this.maxSubscriptions = maxSubscriptions;
+        this.delivered = deltas(meterRegistry, "delivered");
+        this.coalesced = deltas(meterRegistry, "coalesced");
+        this.dropped = deltas(meterRegistry, "dropped");
+        this.stalled = deltas(meterRegistry, "stalled");
+        this.rejected = deltas(meterRegistry, "rejected");
+        Gauge.builder("budgeting.events.subscriptions", open, AtomicInteger::get)
+                .description("Open event streams")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @throws ServiceOverloadedException when {@code max-subscriptions} streams are open already
+     */
+    public Subscription subscribe(String userId, DeltaSink sink) {
+        if (open.incrementAndGet() > maxSubscriptions) {
+            open.decrementAndGet();
+            throw ServiceOverloadedException.subscriptions(maxSubscriptions);
+        }
+
+        Subscription subscription = new Subscription(userId, sink);
+        subscriptions.computeIfAbsent(userId, key -> ConcurrentHashMap.newKeySet()).add(subscription);
+        return subscription;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBalanceChanged(BalanceChangedEvent event) {
+        Set<Subscription> userSubscriptions = subscriptions.get(event.getUserId());
+
+        if (Objects.isNull(userSubscriptions) || Objects.isNull(event.getBalance())) {
+            return;
+        }
+
+        BalanceDelta delta = new BalanceDelta(event.getRegistryId(), Money.of(event.getBalance()));
+        userSubscriptions.forEach(subscription -> subscription.offer(delta));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    /**
+     * Runs the write on a sender thread, which holds one of the {@code sender-threads} permits until the write returns.
+     *
+     * @throws RejectedExecutionException if no permit frees up within the wait, as every one is held by a stalled write
+     */
+    private Future<Void> send(SinkWrite write, long waitMillis) throws InterruptedException {
+        if (!senderPermits.tryAcquire(waitMillis, TimeUnit.MILLISECONDS)) {
+            throw new RejectedExecutionException("Every event sender is busy");
+        }
+
+        try {
+            return senders.submit(() -> {
+                try {
+                    write.run();
+                    return null;
+                } finally {
+                    senderPermits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            senderPermits.release();
+            throw e;
+        }
+    }
+
+    private static Counter deltas(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("budgeting.events.deltas")
+                .description("Balance deltas queued for event streams, by what became of them")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    @FunctionalInterface
+    public interface DeltaSink {
+
+        void send(BalanceDelta delta) throws IOException;
+
+        /**
+         * Ends the stream after a send stalled; runs on a sender thread, possibly while that send still blocks.
+         */
+        default void close() {
+        }
+    }
+
+    @FunctionalInterface
+    private interface SinkWrite {
+
+        void run() throws IOException;
+    }
+
+    public final class Subscription {
+
+        private final String userId;
+        private final DeltaSink sink;
+        private final Map<String, BalanceDelta> pending = new LinkedHashMap<>();
+        private boolean scheduled;
+        private volatile boolean cancelled;
+
+        private Subscription(String userId, DeltaSink sink) {
+            this.userId = userId;
+            this.sink = sink;
+        }
+
+        /**
+         * Stops the deltas, safe to call more than once.
+         */
+        public void cancel() {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                cancelled = true;
+                pending.clear();
+            }
+
+            subscriptions.computeIfPresent(userId, (key, userSubscriptions) -> {
+                userSubscriptions.remove(this);
+                return userSubscriptions.isEmpty() ? null : userSubscriptions;
+            });
+            open.decrementAndGet();
+        }
+
+        private synchronized void offer(BalanceDelta delta) {
+            if (cancelled) {
+                return;
+            }
+
+            if (Objects.nonNull(pending.put(delta.getId(), delta))) {
+                coalesced.increment();
+            } else if (pending.size() > bufferSize) {
+                Iterator<BalanceDelta> oldest = pending.values().iterator();
+                oldest.next();
+                oldest.remove();
+                dropped.increment();
+            }
+
+            if (!scheduled) {
+                scheduled = true;
+                dispatcher.execute(this::drain);
+            }
+        }
+
+        /**
+         * Writes what is queued, then goes back to the end of the dispatch queue if more arrived meanwhile, so a slow
+         * stream holds a dispatcher thread for one buffer at most, a stalled one for {@code send-timeout-ms}, twice that
+         * while waiting for a sender.
+         */
+        private void drain() {
+            List<BalanceDelta> deltas;
+            synchronized (this) {
+                deltas = new ArrayList<>(pending.values());
+                pending.clear();
+            }
+
+            try {
+                for (BalanceDelta delta : deltas) {
+                    if (cancelled) {
+                        return;
+                    }
+                    Future<Void> sent = send(() -> sink.send(delta), sendTimeoutMillis);
+                    sent.get(sendTimeoutMillis, TimeUnit.MILLISECONDS);
+                    delivered.increment();
+                }
+            } catch (TimeoutException e) {
+                log.debug("Closing event stream of user {}: no send within {} ms", userId, sendTimeoutMillis);
+                stalled.increment();
+                cancel();
+                try {
+                    // Not on a dispatcher, closing waits for the stalled send.
+                    send(sink::close, 0);
+                } catch (RejectedExecutionException rejection) {
+                    log.debug("Leaving stalled event stream of user {} to its timeout", userId);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            } catch (ExecutionException e) {
+                log.debug("Closing event stream of user {}: {}", userId, e.getCause().toString());
+                cancel();
+            } catch (InterruptedException e) {
+                // Shutting down.
+                Thread.currentThread().interrupt();
+                cancel();
+            } catch (RejectedExecutionException e) {
+                // Every sender is stalled or the bus shuts down. No send of this stream is in flight, it closes at once.
+                log.debug("Closing event stream of user {}: no sender thread", userId);
+                rejected.increment();
+                cancel();
+                sink.close();
+            } finally {
+                synchronized (this) {
+                    if (pending.isEmpty() || cancelled) {
+                        scheduled = false;
+                    } else {
+                        dispatcher.execute(this::drain);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.petke.budgeting.service;
+
+import com.petke.budgeting.exception.BudgetingException;
+import com.petke.budgeting.exception.InvalidRequestException;
+import com.petke.budgeting.exception.RegistryNotFoundException;
+import com.petke.budgeting.model.Money;
+import com.petke.budgeting.model.event.BalanceChangedEvent;
+import com.petke.budgeting.model.request.BatchTransferItem;
+import com.petke.budgeting.model.request.BatchTransferMode;
+import com.petke.budgeting.model.request.BatchTransferRequest;
+import com.petke.budgeting.model.response.BatchTransferResponse;
+import com.petke.budgeting.model.response.TransferResult;
+import com.petke.budgeting.model.response.TransferStatus;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Runs a batch of transfers against a working copy of the balances, in request order, so a transfer
+ * may spend what an earlier one of the batch brought in. Nothing is written, callers apply
+ * {@link #getBalances()} and publish {@link #getEvents()} only if {@link BatchTransferResponse#isApplied()}.
+ */
+@Getter
+class BatchTransferPlan {
+
+    private final BatchTransferResponse response;
+    private final Map<String, Money> balances;
+    private final List<BalanceChangedEvent> events;
+
+    private BatchTransferPlan(BatchTransferResponse response, Map<String, Money> balances, List<BalanceChangedEvent> events) {
+        this.response = response;
+        this.balances = balances;
+        this.events = events;
+    }
+
+    /**
+     * @param balances current balances of the registries of the user involved in the batch, missing ids are not found
+     */
+    static BatchTransferPlan of(String userId, BatchTransferRequest request, Map<String, Money> balances) {
+        Map<String, Money> working = new HashMap<>(balances);
+        List<TransferResult> results = new ArrayList<>(request.getTransfers().size());
+        List<BalanceChangedEvent> events = new ArrayList<>();
+        boolean rejected = false;
+
+        for (int index = 0; index < request.getTransfers().size(); index++) {
+            BatchTransferItem item = request.getTransfers().get(index);
+            BudgetingException rejection = apply(userId, item, working, events);
+            rejected |= Objects.nonNull(rejection);
+            results.add(Objects.isNull(rejection)
+                    ? new TransferResult(index, item.getSourceRegistryId(), item.getTargetRegistryId(), TransferStatus.APPLIED, null, null)
+                    : new TransferResult(index, item.getSourceRegistryId(), item.getTargetRegistryId(), TransferStatus.REJECTED,
+                    rejection.getCode(), rejection.getMessage()));
+        }
+
+        if (rejected && request.getMode() == BatchTransferMode.ALL_OR_NOTHING) {
+            List<TransferResult> skipped = new ArrayList<>(results.size());
+            for (TransferResult result : results) {
+                skipped.add(result.getStatus() == TransferStatus.APPLIED
+                        ? new TransferResult(result.getIndex(), result.getSourceRegistryId(), result.getTargetRegistryId(), TransferStatus.SKIPPED, null, null)
+                        : result);
+            }
+            return new BatchTransferPlan(new BatchTransferResponse(false, skipped), balances, List.of());
+        }
+
+        return new BatchTransferPlan(new BatchTransferResponse(!events.isEmpty(), results), working, events);
+    }
+
+    /**
+     * @return why the transfer was rejected, never thrown
+     */
+    private static BudgetingException apply(String userId, BatchTransferItem item, Map<String, Money> balances, List<BalanceChangedEvent> events) {
+        Money source = balances.get(item.getSourceRegistryId());
+        Money target = balances.get(item.getTargetRegistryId());
+
+        if (Objects.isNull(source)) {
+            return RegistryNotFoundException.source(item.getSourceRegistryId(), userId);
+        }
+
+        if (Objects.isNull(target)) {
+            return RegistryNotFoundException.target(item.getTargetRegistryId(), userId);
+        }
+
+        Money amount = Money.of(item.getAmount());
+
+        if (source.isLessThan(amount)) {
+            return InvalidRequestException.insufficientFunds(source, item.getAmount());
+        }
+
+        balances.put(item.getSourceRegistryId(), source.subtract(amount));
+        balances.put(item.getTargetRegistryId(), balances.get(item.getTargetRegistryId()).add(amount));
+        events.add(BalanceChangedEvent.transferOut(userId, item.getSourceRegistryId(), amount.toBigDecimal(),
+                balances.get(item.getSourceRegistryId()).toBigDecimal()));
+        events.add(BalanceChangedEvent.transferIn(userId, item.getTargetRegistryId(), amount.toBigDecimal(),
+                balances.get(item.getTargetRegistryId()).toBigDecimal()));
+        return null;
+    }
+}
@@ -0,0 +1,55 @@
+package com.petke.budgeting.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retries {@link RetryOnConflict} methods on optimistic lock failures and lost lock races with exponential
+ * backoff and jitter. Ordered before the transaction interceptor, so every attempt runs in a fresh transaction.
+ * Every retry counts into {@code budgeting.conflict.retries}, tagged by method.
+ */
+@Slf4j
+@Aspect
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 1)
+public class ConflictRetryAspect {
+
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final MeterRegistry meterRegistry;
+
+    public ConflictRetryAspect(@Value("${budgeting.retry.max-attempts:5}") int maxAttempts,
+                               @Value("${budgeting.retry.backoff-ms:5}") long backoffMillis,
+                               MeterRegistry meterRegistry) {
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoffMillis;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("@annotation(com.petke.budgeting.service.RetryOnConflict)")
+    public Object retry(ProceedingJoinPoint joinPoint) throws Throwable {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return joinPoint.proceed();
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                log.debug("Conflict on {}, attempt {} of {}", joinPoint.getSignature().getName(), attempt, maxAttempts);
+                meterRegistry.counter("budgeting.conflict.retries", "method", joinPoint.getSignature().getName()).increment();
+                long backoff = backoffMillis << Math.min(attempt - 1, 10);
+                Thread.sleep(backoff + ThreadLocalRandom.current().nextLong(backoff + 1));
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.petke.budgeting.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.petke.budgeting.exception.BudgetingException;
+import com.petke.budgeting.exception.InvalidRequestException;
+import com.petke.budgeting.exception.RegistryNotFoundException;
+import com.petke.budgeting.model.BalanceOperation;
+import com.petke.budgeting.model.IdempotencyRecord;
+import com.petke.budgeting.model.Money;
+import com.petke.budgeting.repository.IdempotencyRecordRepository;
+import com.petke.budgeting.repository.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs a request sent with an {@code Idempotency-Key} at most once per user and key. The outcome of the first run,
+ * success or a {@link RegistryNotFoundException} or {@link InvalidRequestException}, is kept in a bounded store for
+ * {@code ttl-seconds} and replayed to retries with a single lookup. Concurrent duplicates wait for the first run
+ * instead of starting their own. Any other failure forgets the key, so the client can retry it.
+ * When {@code persistent}, outcomes are also written to {@code idempotency_record} and looked up on a miss.
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final ShardRouter shardRouter;
+    private final Cache<String, Entry> entries;
+    private final long ttlMillis;
+    private final boolean persistent;
+
+    public IdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository,
+                              ShardRouter shardRouter,
+                              @Value("${budgeting.idempotency.maximum-size:100000}") long maximumSize,
+                              @Value("${budgeting.idempotency.ttl-seconds:86400}") long ttlSeconds,
+                              @Value("${budgeting.idempotency.persistent:false}") boolean persistent) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.shardRouter = shardRouter;
+        this.entries = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .build();
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+        this.persistent = persistent;
+    }
+
+    /**
+     * @param key     idempotency key sent by the client, {@code null} runs the operation unguarded
+     * @param request canonical description of the request, see {@link #describe}; a key reused for a different
+     *                request is rejected
+     */
+    @ShardedByUser
+    public void execute(String userId, String key, String request, Runnable operation) {
+        if (Objects.isNull(key)) {
+            operation.run();
+            return;
+        }
+
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            throw new InvalidRequestException(String.format("Idempotency-Key must have between 1 and %d characters", MAX_KEY_LENGTH));
+        }
+
+        String id = userId + ':' + key;
+        String fingerprint = DigestUtils.md5DigestAsHex(request.getBytes(StandardCharsets.UTF_8));
+        Entry entry = find(id, fingerprint);
+
+        if (!entry.fingerprint.equals(fingerprint)) {
+            throw new InvalidRequestException(String.format("Idempotency-Key '%s' was already used for a different request", key));
+        }
+
+        if (entry.claimed.compareAndSet(false, true)) {
+            run(userId, id, entry, operation);
+        } else {
+            replay(entry);
+        }
+    }
+
+    /**
+     * Describes a balance change by what it does rather than by how its body was written, so {@code 10} and
+     * {@code 10.00} or reordered fields are the same request.
+     */
+    public static String describe(BalanceOperation operation, String registryId, String targetRegistryId, BigDecimal amount) {
+        return operation + " " + registryId + " " + targetRegistryId + " "
+                + (Objects.isNull(amount) ? null : Money.of(amount).getMinorUnits());
+    }
+
+    @Scheduled(fixedDelayString = "${budgeting.idempotency.purge-interval-ms:600000}")
+    public void purge() {
+        if (persistent) {
+            long createdBefore = System.currentTimeMillis() - ttlMillis;
+            shardRouter.forEach(shard -> {
+                int purged = idempotencyRecordRepository.deleteCreatedBefore(createdBefore);
+                log.debug("Purged {} idempotency records of shard {}", purged, shard);
+            });
+        }
+    }
+
+    private Entry find(String id, String fingerprint) {
+        try {
+            return entries.get(id, () -> persistent
+                    ? idempotencyRecordRepository.findById(id).map(Entry::recorded).orElseGet(() -> new Entry(fingerprint))
+                    : new Entry(fingerprint));
+        } catch (UncheckedExecutionException e) {
+            throw (RuntimeException) e.getCause();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void run(String userId, String id, Entry entry, Runnable operation) {
+        try {
+            operation.run();
+            entry.outcome.complete(null);
+            record(userId, id, entry, null);
+        } catch (BudgetingException e) {
+            entry.outcome.completeExceptionally(e);
+            record(userId, id, entry, e);
+            throw e;
+        } catch (RuntimeException e) {
+            entries.asMap().remove(id, entry);
+            entry.outcome.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private void record(String userId, String id, Entry entry, BudgetingException error) {
+        if (!persistent) {
+            return;
+        }
+
+        try {
+            idempotencyRecordRepository.save(new IdempotencyRecord(id, userId, entry.fingerprint,
+                    Objects.isNull(error) ? null : error.getClass().getSimpleName(),
+                    Objects.isNull(error) ? null : error.getCode(),
+                    Objects.isNull(error) ? null : error.getMessage()));
+        } catch (RuntimeException e) {
+            // The operation is applied already, the in-memory entry still guards retries until it expires.
+            log.warn("Could not record idempotency key {}", id, e);
+        }
+    }
+
+    private static void replay(Entry entry) {
+        try {
+            entry.outcome.join();
+        } catch (CompletionException e) {
+            throw (RuntimeException) e.getCause();
+        }
+    }
+
+    private static final class Entry {
+
+        private final String fingerprint;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CompletableFuture<Void> outcome = new CompletableFuture<>();
+
+        private Entry(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        private static Entry recorded(IdempotencyRecord record) {
+            Entry entry = new Entry(record.getFingerprint());
+            entry.claimed.set(true);
+
+            if (Objects.isNull(record.getErrorType())) {
+                entry.outcome.complete(null);
+            } else if (RegistryNotFoundException.class.getSimpleName().equals(record.getErrorType())) {
+                entry.outcome.completeExceptionally(Objects.isNull(record.getErrorCode())
+                        ? new RegistryNotFoundException(record.getErrorMessage())
+                        : new RegistryNotFoundException(record.getErrorCode(), record.getErrorMessage()));
+            } else {
+                entry.outcome.completeExceptionally(Objects.isNull(record.getErrorCode())
+                        ? new InvalidRequestException(record.getErrorMessage())
+                        : new InvalidRequestException(record.getErrorCode(), record.getErrorMessage()));
+            }
+
+            return entry;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.petke.budgeting.service;
+
+import com.petke.budgeting.model.LedgerEntry;
+import com.petke.budgeting.repository.LedgerEntryRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+@Service
+public class LedgerService {
+
+    private final LedgerEntryRepository ledgerEntryRepository;
+
+    public LedgerService(LedgerEntryRepository ledgerEntryRepository) {
+        this.ledgerEntryRepository = ledgerEntryRepository;
+    }
+
+    /**
+     * Balance of the registry as recorded by the ledger: the latest snapshot plus every amount appended after it,
+     * {@code null} if the ledger holds no snapshot for the registry yet.
+     */
+    @Transactional(readOnly = true)
+    public BigDecimal balanceOf(String registryId) {
+        LedgerEntry snapshot = ledgerEntryRepository.findFirstByRegistryIdAndBalanceIsNotNullOrderBySequenceDesc(registryId);
+
+        if (Objects.isNull(snapshot)) {
+            return null;
+        }
+
+        return snapshot.getBalance().add(ledgerEntryRepository.sumAmountAfter(registryId, snapshot.getSequence()));
+    }
+}
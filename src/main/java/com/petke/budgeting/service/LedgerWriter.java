@@ -0,0 +1,156 @@
+package com.petke.budgeting.service;
+
+import com.petke.budgeting.model.LedgerEntry;
+import com.petke.budgeting.model.event.BalanceChangedEvent;
+import com.petke.budgeting.repository.LedgerEntryRepository;
+import com.petke.budgeting.repository.ShardRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Appends committed balance changes to the ledger. Entries are queued after commit and inserted
+ * by a background flush, {@code batchSize} rows per JDBC batch, then rolled up into the {@link RegistryHistory}.
+ * With shards every batch is split by the shard of the users, the sequence stays global across shards.
+ * <p>
+ * The sequence is taken when an entry is queued, after its transaction committed. It is not the commit order: two
+ * transactions committing close together may be numbered either way. A batch that fails is kept and retried by the
+ * next flush before any newer entry, {@code max-attempts} times at most. Meanwhile the queue fills up, committing
+ * threads wait {@code offer-timeout-ms} for room. Entries given up on either way are logged as dead letters, one
+ * {@code ERROR} line each with everything needed to append them by hand, and counted by
+ * {@code budgeting.ledger.entries}.
+ */
+@Slf4j
+@Component
+public class LedgerWriter {
+
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final RegistryHistory registryHistory;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate transaction;
+    private final BlockingQueue<LedgerEntry> pending;
+    private final List<LedgerEntry> failed = new ArrayList<>();
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long offerTimeoutMillis;
+    private final Counter appended;
+    private final Counter deadLettered;
+    private final AtomicLong sequence = new AtomicLong();
+    private int failedAttempts;
+
+    public LedgerWriter(LedgerEntryRepository ledgerEntryRepository,
+                        RegistryHistory registryHistory,
+                        ShardRouter shardRouter,
+                        PlatformTransactionManager transactionManager,
+                        MeterRegistry meterRegistry,
+                        @Value("${budgeting.ledger.queue-capacity:100000}") int queueCapacity,
+                        @Value("${budgeting.ledger.offer-timeout-ms:1000}") long offerTimeoutMillis,
+                        @Value("${budgeting.ledger.max-attempts:10}") int maxAttempts,
+                        @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int batchSize) {
+        this.ledgerEntryRepository = ledgerEntryRepository;
+        this.registryHistory = registryHistory;
+        this.shardRouter = shardRouter;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.pending = new LinkedBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.appended = entries(meterRegistry, "appended");
+        this.deadLettered = entries(meterRegistry, "dead-lettered");
+    }
+
+    @PostConstruct
+    void init() {
+        shardRouter.forEach(shard -> sequence.accumulateAndGet(ledgerEntryRepository.findMaxSequence(), Math::max));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBalanceChanged(BalanceChangedEvent event) throws InterruptedException {
+        LedgerEntry entry = new LedgerEntry(sequence.incrementAndGet(), event);
+        if (!pending.offer(entry, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+            deadLetter(List.of(entry), "ledger queue full");
+        }
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${budgeting.ledger.flush-interval-ms:100}")
+    public synchronized void flush() {
+        // Entries of a failed batch go first, ahead of the ones queued after them.
+        List<LedgerEntry> batch = new ArrayList<>(failed);
+        failed.clear();
+
+        while (!batch.isEmpty() || pending.drainTo(batch, batchSize) > 0) {
+            if (shardRouter.count() == 1) {
+                failed.addAll(append(batch));
+            } else {
+                Map<Integer, List<LedgerEntry>> byShard = batch.stream()
+                        .collect(Collectors.groupingBy(entry -> shardRouter.shardOf(entry.getUserId())));
+                byShard.forEach((shard, entries) -> failed.addAll(shardRouter.on(shard, () -> append(entries))));
+            }
+
+            if (!failed.isEmpty()) {
+                if (++failedAttempts >= maxAttempts) {
+                    deadLetter(failed, failedAttempts + " failed attempts");
+                    failed.clear();
+                    failedAttempts = 0;
+                }
+                return;
+            }
+            failedAttempts = 0;
+            appended.increment(batch.size());
+            log.debug("Appended {} ledger entries", batch.size());
+            batch.clear();
+        }
+    }
+
+    /**
+     * @return the entries that were not appended, to be retried by the next flush
+     */
+    private List<LedgerEntry> append(List<LedgerEntry> entries) {
+        try {
+            // One transaction, so a retried batch is never rolled up into the history twice.
+            transaction.execute(status -> {
+                ledgerEntryRepository.saveAll(entries);
+                registryHistory.record(entries);
+                return null;
+            });
+            return List.of();
+        } catch (RuntimeException e) {
+            log.warn("Failed to append {} ledger entries, retrying on the next flush", entries.size(), e);
+            return entries;
+        }
+    }
+
+    private void deadLetter(List<LedgerEntry> entries, String reason) {
+        for (LedgerEntry entry : entries) {
+            log.error("Dead ledger entry ({}): sequence={} registryId={} userId={} operation={} amount={} balance={} "
+                            + "createdAt={}", reason, entry.getSequence(), entry.getRegistryId(), entry.getUserId(),
+                    entry.getOperation(), entry.getAmount(), entry.getBalance(), entry.getCreatedAt());
+        }
+        deadLettered.increment(entries.size());
+    }
+
+    private static Counter entries(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("budgeting.ledger.entries")
+                .description("Committed balance changes, by whether they reached the ledger")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,19 @@
+package com.petke.budgeting.service;
+
+/**
+ * How {@link RegistryService} protects balances from concurrent updates, set with {@code budgeting.locking}.
+ */
+public enum LockingMode {
+    /**
+     * Single-statement UPDATEs of the amount, no entity is loaded.
+     */
+    ATOMIC,
+    /**
+     * Loads entities and relies on their version, losers are retried.
+     */
+    OPTIMISTIC,
+    /**
+     * Loads entities with SELECT ... FOR UPDATE.
+     */
+    PESSIMISTIC
+}
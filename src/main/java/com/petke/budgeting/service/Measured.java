@@ -0,0 +1,16 @@
+package com.petke.budgeting.service;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Records latency, outcome and number of queries of the annotated method as the given budgeting operation.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Measured {
+
+    String value();
+}
@@ -0,0 +1,69 @@
+package com.petke.budgeting.service;
+
+import com.petke.budgeting.config.QueryCounter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times {@link Measured} methods into {@code budgeting.operation}, tagged by operation and outcome, the simple name
+ * of the exception thrown or {@code success}, and records their queries into {@code budgeting.operation.queries}.
+ * Ordered before {@link ConflictRetryAspect}, so retries are part of the measured call.
+ * Meters are looked up once per operation and outcome, recording one is a few atomic updates.
+ */
+@Aspect
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 2)
+public class OperationMetricsAspect {
+
+    private static final String SUCCESS = "success";
+
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, DistributionSummary> queries = new ConcurrentHashMap<>();
+
+    public OperationMetricsAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("@annotation(measured)")
+    public Object measure(ProceedingJoinPoint joinPoint, Measured measured) throws Throwable {
+        String outcome = SUCCESS;
+        long queriesBefore = QueryCounter.current();
+        long started = System.nanoTime();
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            outcome = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            timer(measured.value(), outcome).record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            queries(measured.value()).record(QueryCounter.current() - queriesBefore);
+        }
+    }
+
+    private Timer timer(String operation, String outcome) {
+        return timers.computeIfAbsent(operation + ':' + outcome, key -> Timer.builder("budgeting.operation")
+                .description("Latency of budgeting operations")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .register(meterRegistry));
+    }
+
+    private DistributionSummary queries(String operation) {
+        return queries.computeIfAbsent(operation, key -> DistributionSummary.builder("budgeting.operation.queries")
+                .description("SQL statements prepared by Hibernate per budgeting operation")
+                .tag("operation", operation)
+                .register(meterRegistry));
+    }
+}
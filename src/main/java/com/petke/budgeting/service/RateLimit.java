@@ -0,0 +1,20 @@
+package com.petke.budgeting.service;
+
+/**
+ * Kinds of requests limited separately per user by {@link UserRateLimiter}.
+ */
+public enum RateLimit {
+    READ("read"),
+    RECHARGE("recharge"),
+    TRANSFER("transfer");
+
+    private final String label;
+
+    RateLimit(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
@@ -0,0 +1,66 @@
+package com.petke.budgeting.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Imports {@code --budgeting.bulk.import-file} and exports into {@code --budgeting.bulk.export-file} at startup,
+ * CSV unless the file name ends with {@code .ndjson}. Add {@code --spring.main.web-application-type=none} to exit afterwards.
+ */
+@Slf4j
+@Component
+public class RegistryBulkRunner implements ApplicationRunner {
+
+    private final RegistryBulkService registryBulkService;
+    private final String importFile;
+    private final String exportFile;
+
+    public RegistryBulkRunner(RegistryBulkService registryBulkService,
+                              @Value("${budgeting.bulk.import-file:}") String importFile,
+                              @Value("${budgeting.bulk.export-file:}") String exportFile) {
+        this.registryBulkService = registryBulkService;
+        this.importFile = importFile;
+        this.exportFile = exportFile;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        if (StringUtils.hasText(importFile)) {
+            Path path = Paths.get(importFile);
+            try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(path))) {
+                log.info("Import of {} finished: {}", path, isNdjson(path)
+                        ? registryBulkService.importNdjson(inputStream)
+                        : registryBulkService.importCsv(inputStream));
+            }
+        }
+
+        if (StringUtils.hasText(exportFile)) {
+            Path path = Paths.get(exportFile);
+            try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(path))) {
+                if (isNdjson(path)) {
+                    registryBulkService.exportNdjson(outputStream);
+                } else {
+                    registryBulkService.exportCsv(outputStream);
+                }
+            }
+            log.info("Exported registries into {}", path);
+        }
+    }
+
+    private static boolean isNdjson(Path path) {
+        return path.getFileName().toString().endsWith(".ndjson");
+    }
+}
@@ -0,0 +1,270 @@
+package com.petke.budgeting.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.dataformat.csv.CsvGenerator;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.petke.budgeting.exception.InvalidRequestException;
+import com.petke.budgeting.model.Money;
+import com.petke.budgeting.model.RegistryRecord;
+import com.petke.budgeting.model.TimeOrderedIdGenerator;
+import com.petke.budgeting.model.response.ImportResult;
+import com.petke.budgeting.repository.ShardRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Streams registries in and out as CSV with a header line or as NDJSON. Imports are parsed one row at a time and
+ * inserted {@code batch-size} rows per transaction, each batch committed on its own, so a failing row leaves the
+ * rows before it imported; rows whose id already exists are skipped, which makes re-running an import with ids safe.
+ * Exports read the table in id order with a bounded fetch size. With shards a batch is split by the shard of its
+ * users and committed shard by shard, exports read one shard after the other, each in id order.
+ */
+@Slf4j
+@Service
+public class RegistryBulkService {
+
+    private static final String INSERT_REGISTRIES = "INSERT IGNORE INTO registry (id, label, user_id, amount, version) VALUES ";
+    private static final int ROWS_PER_STATEMENT = 100;
+    // Column sizes of registry.
+    private static final int MAX_ID_LENGTH = 32;
+    private static final int MAX_USER_ID_LENGTH = 255;
+    private static final int MAX_LABEL_LENGTH = 255;
+    private static final String RESET_USER_TOTAL = "DELETE FROM user_total WHERE user_id = ?";
+    private static final String SELECT_REGISTRIES = "SELECT id, label, user_id, amount FROM registry ORDER BY id";
+    private static final CsvSchema CSV_SCHEMA = new CsvMapper().schemaFor(RegistryRecord.class).withHeader();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transaction;
+    private final ObjectMapper objectMapper;
+    private final CsvMapper csvMapper = new CsvMapper().enable(CsvGenerator.Feature.STRICT_CHECK_FOR_QUOTING);
+    private final RegistryCache registryCache;
+    private final BalanceEngine balanceEngine;
+    private final ShardRouter shardRouter;
+    private final Counter importedRows;
+    private final int batchSize;
+    private final int fetchSize;
+    private final long progressInterval;
+
+    public RegistryBulkService(JdbcTemplate jdbcTemplate,
+                               PlatformTransactionManager transactionManager,
+                               ObjectMapper objectMapper,
+                               RegistryCache registryCache,
+                               ObjectProvider<BalanceEngine> balanceEngine,
+                               ShardRouter shardRouter,
+                               MeterRegistry meterRegistry,
+                               @Value("${budgeting.bulk.batch-size:10000}") int batchSize,
+                               @Value("${budgeting.bulk.fetch-size:1000}") int fetchSize,
+                               @Value("${budgeting.bulk.progress-interval:100000}") long progressInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.registryCache = registryCache;
+        this.balanceEngine = balanceEngine.getIfAvailable();
+        this.shardRouter = shardRouter;
+        this.importedRows = Counter.builder("budgeting.import.rows")
+                .description("Registries inserted by bulk imports")
+                .register(meterRegistry);
+        this.batchSize = batchSize;
+        this.fetchSize = fetchSize;
+        this.progressInterval = progressInterval;
+    }
+
+    @Measured("import")
+    public ImportResult importCsv(InputStream inputStream) throws IOException {
+        return importRecords(csvMapper.readerFor(RegistryRecord.class).with(CSV_SCHEMA).readValues(inputStream));
+    }
+
+    @Measured("import")
+    public ImportResult importNdjson(InputStream inputStream) throws IOException {
+        return importRecords(objectMapper.readerFor(RegistryRecord.class).readValues(inputStream));
+    }
+
+    @Measured("export")
+    public void exportCsv(OutputStream outputStream) throws IOException {
+        try (SequenceWriter writer = csvMapper.writerFor(RegistryRecord.class).with(CSV_SCHEMA).writeValues(outputStream)) {
+            export(record -> writer.write(record));
+        }
+    }
+
+    @Measured("export")
+    public void exportNdjson(OutputStream outputStream) throws IOException {
+        ObjectWriter writer = objectMapper.writerFor(RegistryRecord.class);
+        export(record -> {
+            outputStream.write(writer.writeValueAsBytes(record));
+            outputStream.write('\n');
+        });
+        outputStream.flush();
+    }
+
+    private ImportResult importRecords(MappingIterator<RegistryRecord> records) throws IOException {
+        long started = System.nanoTime();
+        long imported = 0;
+        long read = 0;
+        List<Object[]> batch = new ArrayList<>(batchSize);
+
+        try (records) {
+            for (RegistryRecord record = next(records); Objects.nonNull(record); record = next(records)) {
+                batch.add(toRow(record, records.getCurrentLocation().getLineNr()));
+                read++;
+
+                if (batch.size() == batchSize) {
+                    imported += insert(batch);
+                    batch.clear();
+                }
+
+                if (read % progressInterval == 0) {
+                    log.info("Imported {} of {} registries read, {} rows/s", imported, read, rate(read, started));
+                }
+            }
+            imported += insert(batch);
+        } catch (InvalidRequestException e) {
+            // Earlier batches stay committed, tell the client where to resume.
+            throw new InvalidRequestException(e.getCode(),
+                    String.format("%s, %d registries were imported before it", e.getMessage(), imported));
+        }
+
+        log.info("Imported {} registries, skipped {} existing ones, {} rows/s", imported, read - imported, rate(read, started));
+        return new ImportResult(imported, read - imported, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private long insert(List<Object[]> batch) {
+        if (shardRouter.count() == 1) {
+            return insertShard(batch);
+        }
+
+        Map<Integer, List<Object[]>> byShard = batch.stream().collect(Collectors.groupingBy(row -> shardRouter.shardOf((String) row[2])));
+        long inserted = 0;
+        for (Map.Entry<Integer, List<Object[]>> shard : byShard.entrySet()) {
+            inserted += shardRouter.on(shard.getKey(), () -> insertShard(shard.getValue()));
+        }
+        return inserted;
+    }
+
+    /**
+     * Inserts the rows in one transaction, {@link #ROWS_PER_STATEMENT} rows per statement, and drops the cached
+     * listings and maintained totals of their users, they are rebuilt on their next read.
+     */
+    private long insertShard(List<Object[]> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        Set<String> userIds = batch.stream().map(row -> (String) row[2]).collect(Collectors.toCollection(HashSet::new));
+        long inserted = Objects.requireNonNull(transaction.execute(status -> {
+            long count = 0;
+            for (int from = 0; from < batch.size(); from += ROWS_PER_STATEMENT) {
+                List<Object[]> rows = batch.subList(from, Math.min(from + ROWS_PER_STATEMENT, batch.size()));
+                count += jdbcTemplate.update(insertRegistries(rows.size()), rows.stream().flatMap(Arrays::stream).toArray());
+            }
+            jdbcTemplate.batchUpdate(RESET_USER_TOTAL, userIds.stream().map(userId -> new Object[]{userId}).collect(Collectors.toList()));
+            return count;
+        }));
+
+        userIds.forEach(registryCache::invalidate);
+        importedRows.increment(inserted);
+        return inserted;
+    }
+
+    private static String insertRegistries(int rows) {
+        return INSERT_REGISTRIES + String.join(", ", Collections.nCopies(rows, "(?, ?, ?, ?, 0)"));
+    }
+
+    private static Object[] toRow(RegistryRecord record, long line) {
+        if (!StringUtils.hasText(record.getUserId())) {
+            throw new InvalidRequestException(String.format("Line %d: userId is required", line));
+        }
+
+        if (record.getUserId().length() > MAX_USER_ID_LENGTH) {
+            throw new InvalidRequestException(String.format("Line %d: userId is longer than %d characters", line, MAX_USER_ID_LENGTH));
+        }
+
+        if (Objects.nonNull(record.getLabel()) && record.getLabel().length() > MAX_LABEL_LENGTH) {
+            throw new InvalidRequestException(String.format("Line %d: label is longer than %d characters", line, MAX_LABEL_LENGTH));
+        }
+
+        if (Objects.isNull(record.getAmount()) || record.getAmount().signum() < 0) {
+            throw new InvalidRequestException(String.format("Line %d: amount must be zero or positive", line));
+        }
+
+        String id = StringUtils.hasText(record.getId()) ? record.getId() : TimeOrderedIdGenerator.next();
+        if (id.length() > MAX_ID_LENGTH) {
+            throw new InvalidRequestException(String.format("Line %d: id is longer than %d characters", line, MAX_ID_LENGTH));
+        }
+
+        return new Object[]{id, record.getLabel(), record.getUserId(), Money.of(record.getAmount()).toBigDecimal()};
+    }
+
+    /**
+     * @return the next record, {@code null} at the end of the input
+     */
+    private static RegistryRecord next(MappingIterator<RegistryRecord> records) throws IOException {
+        try {
+            return records.hasNextValue() ? records.nextValue() : null;
+        } catch (JsonProcessingException e) {
+            throw new InvalidRequestException(String.format("Line %d: %s", records.getCurrentLocation().getLineNr(), e.getOriginalMessage()));
+        }
+    }
+
+    private void export(RecordWriter writer) {
+        shardRouter.forEach(shard -> exportShard(writer));
+    }
+
+    private void exportShard(RecordWriter writer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_REGISTRIES);
+            statement.setFetchSize(fetchSize);
+            return statement;
+        }, resultSet -> {
+            BigDecimal amount = resultSet.getBigDecimal("amount");
+
+            if (Objects.nonNull(balanceEngine) && Objects.nonNull(amount)) {
+                amount = balanceEngine.currentAmount(resultSet.getString("id"), Money.of(amount)).toBigDecimal();
+            }
+
+            try {
+                writer.write(new RegistryRecord(resultSet.getString("id"), resultSet.getString("label"), resultSet.getString("user_id"), amount));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static long rate(long rows, long startedNanos) {
+        return rows * 1_000_000_000L / Math.max(System.nanoTime() - startedNanos, 1);
+    }
+
+    @FunctionalInterface
+    private interface RecordWriter {
+
+        void write(RegistryRecord record) throws IOException;
+    }
+}
@@ -0,0 +1,115 @@
+package com.petke.budgeting.service;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.petke.budgeting.model.event.BalanceChangedEvent;
+import com.petke.budgeting.model.response.RegistryListing;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded per-user cache of built and serialized registry listings. An entry is dropped as soon as a balance change
+ * of its user commits, and expires after {@code expire-after-write-seconds} regardless.
+ * <p>
+ * Concurrent misses for the same user share a single load and its outcome. A change of the user detaches the load in
+ * flight: readers arriving afterwards start a new one and the detached result is handed to its waiters but never
+ * cached, so nobody reads a listing older than a change committed before the read started.
+ */
+@Component
+public class RegistryCache {
+
+    private final Cache<String, RegistryListing> listings;
+    private final ConcurrentMap<String, CompletableFuture<RegistryListing>> loading = new ConcurrentHashMap<>();
+    private final Counter coalesced;
+
+    public RegistryCache(@Value("${budgeting.registry-cache.maximum-size:10000}") long maximumSize,
+                         @Value("${budgeting.registry-cache.expire-after-write-seconds:60}") long expireAfterWriteSeconds,
+                         MeterRegistry meterRegistry) {
+        this.listings = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        GuavaCacheMetrics.monitor(meterRegistry, listings, "registry.listing");
+        this.coalesced = Counter.builder("budgeting.registry-cache.coalesced")
+                .description("Listing reads served by the load of a concurrent read of the same user")
+                .register(meterRegistry);
+    }
+
+    public RegistryListing get(String userId, Callable<RegistryListing> loader) {
+        RegistryListing listing = listings.getIfPresent(userId);
+
+        if (Objects.nonNull(listing)) {
+            return listing;
+        }
+
+        CompletableFuture<RegistryListing> load = new CompletableFuture<>();
+        CompletableFuture<RegistryListing> running = loading.putIfAbsent(userId, load);
+
+        if (Objects.nonNull(running)) {
+            coalesced.increment();
+            return join(running);
+        }
+
+        try {
+            listing = loader.call();
+        } catch (Throwable e) {
+            // Errors too, followers would otherwise wait on a load that never completes.
+            loading.remove(userId, load);
+            load.completeExceptionally(e);
+            Throwables.throwIfUnchecked(e);
+            throw new IllegalStateException(e);
+        }
+
+        RegistryListing loaded = listing;
+        // Caching and invalidation of a user are serialized by the map, a change can not slip in between.
+        loading.computeIfPresent(userId, (key, current) -> {
+            if (current != load) {
+                return current;
+            }
+            listings.put(key, loaded);
+            return null;
+        });
+        load.complete(loaded);
+        return loaded;
+    }
+
+    public void invalidate(String userId) {
+        loading.compute(userId, (key, current) -> {
+            listings.invalidate(key);
+            return null;
+        });
+    }
+
+    public void invalidateAll() {
+        loading.clear();
+        listings.invalidateAll();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBalanceChanged(BalanceChangedEvent event) {
+        invalidate(event.getUserId());
+    }
+
+    private static RegistryListing join(CompletableFuture<RegistryListing> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw e;
+        }
+    }
+}
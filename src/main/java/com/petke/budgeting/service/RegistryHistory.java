@@ -0,0 +1,146 @@
+package com.petke.budgeting.service;
+
+import com.petke.budgeting.exception.InvalidRequestException;
+import com.petke.budgeting.exception.RegistryNotFoundException;
+import com.petke.budgeting.model.HistoryResolution;
+import com.petke.budgeting.model.LedgerEntry;
+import com.petke.budgeting.model.Money;
+import com.petke.budgeting.model.response.HistoryBucket;
+import com.petke.budgeting.repository.RegistryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Rolls ledger entries up into hourly, daily and monthly buckets per registry, so a range query reads
+ * at most {@code max-buckets} rows instead of every ledger entry in the range. Buckets without any change are not stored.
+ * The closing balance of a bucket is the one of its entry with the highest sequence, whichever flush appended it.
+ */
+@Slf4j
+@Service
+public class RegistryHistory {
+
+    // Balance before its sequence: MySQL assigns left to right, the condition has to see the stored sequence.
+    private static final String UPSERT_BUCKET = "INSERT INTO registry_history (registry_id, resolution, bucket_start, inflow, outflow, balance, balance_sequence, operations) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE inflow = inflow + VALUES(inflow), outflow = outflow + VALUES(outflow), "
+            + "balance = CASE WHEN VALUES(balance_sequence) > COALESCE(balance_sequence, -1) THEN VALUES(balance) ELSE balance END, "
+            + "balance_sequence = CASE WHEN VALUES(balance_sequence) > COALESCE(balance_sequence, -1) THEN VALUES(balance_sequence) ELSE balance_sequence END, "
+            + "operations = operations + VALUES(operations)";
+    private static final String SELECT_BUCKETS = "SELECT h.bucket_start, h.inflow, h.outflow, h.balance, h.operations FROM registry_history h "
+            + "JOIN registry r ON r.id = h.registry_id WHERE r.id = ? AND r.user_id = ? AND h.resolution = ? AND h.bucket_start >= ? AND h.bucket_start < ? "
+            + "ORDER BY h.bucket_start";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final RegistryRepository registryRepository;
+    private final int maxBuckets;
+
+    public RegistryHistory(JdbcTemplate jdbcTemplate,
+                           RegistryRepository registryRepository,
+                           @Value("${budgeting.history.max-buckets:1000}") int maxBuckets) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.registryRepository = registryRepository;
+        this.maxBuckets = maxBuckets;
+    }
+
+    /**
+     * Adds the entries, ordered by sequence, to their buckets of every resolution. Called by the single
+     * {@link LedgerWriter} flush, so the read-modify-write of a bucket row never races with another one.
+     */
+    public void record(List<LedgerEntry> entries) {
+        Map<String, Bucket> buckets = new LinkedHashMap<>();
+
+        for (LedgerEntry entry : entries) {
+            for (HistoryResolution resolution : HistoryResolution.values()) {
+                long start = resolution.bucketStart(entry.getCreatedAt());
+                buckets.computeIfAbsent(entry.getRegistryId() + '/' + resolution + '/' + start,
+                        key -> new Bucket(entry.getRegistryId(), resolution, start)).add(entry);
+            }
+        }
+
+        List<Object[]> upserts = new ArrayList<>(buckets.size());
+        buckets.values().forEach(bucket -> upserts.add(bucket.toRow()));
+        jdbcTemplate.batchUpdate(UPSERT_BUCKET, upserts);
+        log.debug("Recorded {} ledger entries into {} history buckets", entries.size(), upserts.size());
+    }
+
+    @Measured("history")
+    @ShardedByUser
+    public List<HistoryBucket> findBuckets(String userId, String registryId, HistoryResolution resolution, long from, long to) {
+        if (from >= to) {
+            throw InvalidRequestException.emptyHistoryRange(from, to);
+        }
+
+        long start = resolution.bucketStart(from);
+        for (int buckets = 0; start < to; buckets++) {
+            if (buckets == maxBuckets) {
+                throw InvalidRequestException.historyRangeTooLong(maxBuckets, resolution);
+            }
+            start = resolution.nextBucketStart(start);
+        }
+
+        List<HistoryBucket> buckets = jdbcTemplate.query(SELECT_BUCKETS, (resultSet, row) -> new HistoryBucket(
+                        resultSet.getLong("bucket_start"),
+                        Money.of(resultSet.getBigDecimal("inflow")),
+                        Money.of(resultSet.getBigDecimal("outflow")),
+                        Objects.isNull(resultSet.getBigDecimal("balance")) ? null : Money.of(resultSet.getBigDecimal("balance")),
+                        resultSet.getLong("operations")),
+                registryId, userId, resolution.name(), resolution.bucketStart(from), to);
+
+        // The join already filters out registries of other users, only an empty history needs to tell them apart.
+        if (buckets.isEmpty() && !registryRepository.existsByIdAndUserId(registryId, userId)) {
+            throw RegistryNotFoundException.registry(registryId, userId);
+        }
+
+        return buckets;
+    }
+
+    /**
+     * Accumulates in cents, outflows are kept positive.
+     */
+    private static final class Bucket {
+
+        private final String registryId;
+        private final HistoryResolution resolution;
+        private final long start;
+        private long inflow;
+        private long outflow;
+        private BigDecimal balance;
+        private Long balanceSequence;
+        private long operations;
+
+        private Bucket(String registryId, HistoryResolution resolution, long start) {
+            this.registryId = registryId;
+            this.resolution = resolution;
+            this.start = start;
+        }
+
+        private void add(LedgerEntry entry) {
+            long amount = Money.of(entry.getAmount()).getMinorUnits();
+
+            if (amount >= 0) {
+                inflow += amount;
+            } else {
+                outflow -= amount;
+            }
+
+            if (Objects.nonNull(entry.getBalance())) {
+                balance = entry.getBalance();
+                balanceSequence = entry.getSequence();
+            }
+            operations++;
+        }
+
+        private Object[] toRow() {
+            return new Object[]{registryId, resolution.name(), start, Money.ofMinorUnits(inflow).toBigDecimal(),
+                    Money.ofMinorUnits(outflow).toBigDecimal(), balance, balanceSequence, operations};
+        }
+    }
+}
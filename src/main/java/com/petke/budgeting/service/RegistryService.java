@@ -1,73 +1,325 @@
 package com.petke.budgeting.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.petke.budgeting.exception.InvalidRequestException;
 import com.petke.budgeting.exception.RegistryNotFoundException;
+import com.petke.budgeting.model.Money;
 import com.petke.budgeting.model.Registry;
+import com.petke.budgeting.model.event.BalanceChangedEvent;
+import com.petke.budgeting.model.request.BatchTransferItem;
+import com.petke.budgeting.model.request.BatchTransferRequest;
 import com.petke.budgeting.model.request.RechargeRequest;
 import com.petke.budgeting.model.request.TransferRequest;
+import com.petke.budgeting.model.response.BatchTransferResponse;
+import com.petke.budgeting.model.response.RegistryListing;
+import com.petke.budgeting.model.response.RegistryPage;
 import com.petke.budgeting.model.response.RegistryResponse;
 import com.petke.budgeting.repository.RegistryRepository;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.DigestUtils;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class RegistryService {
 
     private final RegistryRepository registryRepository;
+    private final RegistryCache registryCache;
+    private final BalanceEngine balanceEngine;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final LockingMode lockingMode;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int maxPageSize;
 
-    public RegistryService(RegistryRepository registryRepository) {
+    public RegistryService(RegistryRepository registryRepository,
+                           RegistryCache registryCache,
+                           ObjectProvider<BalanceEngine> balanceEngine,
+                           ApplicationEventPublisher eventPublisher,
+                           ObjectMapper objectMapper,
+                           @Value("${budgeting.locking:atomic}") LockingMode lockingMode,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${budgeting.listing.max-page-size:1000}") int maxPageSize) {
         this.registryRepository = registryRepository;
+        this.registryCache = registryCache;
+        this.balanceEngine = balanceEngine.getIfAvailable();
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+        this.lockingMode = lockingMode;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.maxPageSize = maxPageSize;
     }
 
+    @ShardedByUser
     public List<RegistryResponse> findByUserId(String userId) {
-        List<RegistryResponse> registryResponse = registryRepository
-                .findByUserId(userId)
+        return findListingByUserId(userId).getRegistries();
+    }
+
+    @Measured("listing")
+    @ShardedByUser
+    public RegistryListing findListingByUserId(String userId) {
+        return registryCache.get(userId, () -> loadByUserId(userId));
+    }
+
+    /**
+     * Runs the query in a read-only transaction, which also turns flushing off, and serializes outside of it.
+     * Cache hits never open a transaction.
+     */
+    private RegistryListing loadByUserId(String userId) throws JsonProcessingException {
+        List<RegistryResponse> registryResponse = readOnlyTransaction.execute(status -> registryRepository
+                .findResponsesByUserId(userId)
                 .stream()
-                .map(RegistryResponse::new)
-                .collect(Collectors.toUnmodifiableList());
+                .map(this::withCurrentAmount)
+                .collect(Collectors.toUnmodifiableList()));
 
         if (registryResponse.isEmpty()) {
-            throw new RegistryNotFoundException(String.format("No registries found for userId: '%s'", userId));
+            throw RegistryNotFoundException.user(userId);
+        }
+
+        byte[] body = objectMapper.writeValueAsBytes(registryResponse);
+        return new RegistryListing(registryResponse, body, '"' + DigestUtils.md5DigestAsHex(body) + '"');
+    }
+
+    /**
+     * Keyset pagination by registry id: the page holds up to {@code limit} registries with an id greater than
+     * {@code after}, so any page costs one index range scan however deep it is. The limit is checked before the
+     * read-only transaction opens, a rejected page never takes a connection.
+     */
+    @Measured("listing-page")
+    @ShardedByUser
+    public RegistryPage findPageByUserId(String userId, String after, int limit) {
+        if (limit < 1 || limit > maxPageSize) {
+            throw new InvalidRequestException("Page limit must be between 1 and " + maxPageSize);
+        }
+
+        PageRequest pageRequest = PageRequest.of(0, limit + 1);
+        List<RegistryResponse> registries = Objects.requireNonNull(readOnlyTransaction.execute(status -> Objects.isNull(after)
+                ? registryRepository.findResponsePageByUserId(userId, pageRequest)
+                : registryRepository.findResponsePageByUserIdAfter(userId, after, pageRequest)));
+
+        if (registries.isEmpty() && Objects.isNull(after)) {
+            throw RegistryNotFoundException.user(userId);
+        }
+
+        boolean hasNext = registries.size() > limit;
+        List<RegistryResponse> page = registries
+                .stream()
+                .limit(limit)
+                .map(this::withCurrentAmount)
+                .collect(Collectors.toUnmodifiableList());
+
+        return new RegistryPage(page, hasNext ? page.get(limit - 1).getId() : null);
+    }
+
+    @ShardedByUser
+    public void checkUserHasRegistries(String userId) {
+        if (!registryRepository.existsByUserId(userId)) {
+            throw RegistryNotFoundException.user(userId);
         }
+    }
 
-        return registryResponse;
+    /**
+     * Writes the registries of the user as newline delimited JSON while scrolling through them. Nothing is kept
+     * once written, so memory use does not grow with the number of registries.
+     */
+    @Measured("listing-stream")
+    @Transactional(readOnly = true)
+    @ShardedByUser
+    public void streamByUserId(String userId, OutputStream outputStream) throws IOException {
+        try (Stream<RegistryResponse> registries = registryRepository.streamResponsesByUserId(userId)) {
+            for (RegistryResponse registry : (Iterable<RegistryResponse>) registries::iterator) {
+                outputStream.write(objectMapper.writeValueAsBytes(withCurrentAmount(registry)));
+                outputStream.write('\n');
+            }
+        }
     }
 
+    @Measured("recharge")
+    @RetryOnConflict
     @Transactional
+    @ShardedByUser
     public void recharge(String userId, String registryId, RechargeRequest rechargeRequest) {
-        Registry registry = registryRepository.findByIdAndUserId(registryId, userId);
+        if (Objects.nonNull(balanceEngine)) {
+            balanceEngine.recharge(userId, registryId, Money.of(rechargeRequest.getAmount()));
+            return;
+        }
+
+        Money amount = Money.of(rechargeRequest.getAmount());
+
+        if (lockingMode == LockingMode.ATOMIC) {
+            if (registryRepository.credit(registryId, userId, amount) == 0) {
+                throw RegistryNotFoundException.registry(registryId, userId);
+            }
+
+            eventPublisher.publishEvent(BalanceChangedEvent.recharge(userId, registryId, amount.toBigDecimal(),
+                    registryRepository.findAmountByIdAndUserId(registryId, userId).toBigDecimal()));
+            return;
+        }
+
+        Registry registry = find(registryId, userId);
 
         if (Objects.isNull(registry)) {
-            throw new RegistryNotFoundException(String.format("Registry '%s' not found for user: '%s'", registryId, userId));
+            throw RegistryNotFoundException.registry(registryId, userId);
         }
 
-        registry.setAmount(registry.getAmount().add(rechargeRequest.getAmount()));
+        registry.setAmount(registry.getAmount().add(amount));
+        eventPublisher.publishEvent(BalanceChangedEvent.recharge(userId, registryId, amount.toBigDecimal(), registry.getAmount().toBigDecimal()));
     }
 
+    @Measured("transfer")
+    @RetryOnConflict
     @Transactional
+    @ShardedByUser
     public void transfer(String userId, String registryId, TransferRequest transferRequest) {
-        Registry sourceRegistry = registryRepository.findByIdAndUserId(registryId, userId);
-        Registry targetRegistry = registryRepository.findByIdAndUserId(transferRequest.getTargetRegistryId(), userId);
+        if (Objects.nonNull(balanceEngine)) {
+            balanceEngine.transfer(userId, registryId, transferRequest.getTargetRegistryId(), Money.of(transferRequest.getAmount()));
+            return;
+        }
+
+        if (lockingMode == LockingMode.ATOMIC) {
+            transferAtomically(userId, registryId, transferRequest);
+            return;
+        }
+
+        Registry sourceRegistry;
+        Registry targetRegistry;
+        // Registries are locked in id order, so opposite transfers can not deadlock in pessimistic mode.
+        if (registryId.compareTo(transferRequest.getTargetRegistryId()) <= 0) {
+            sourceRegistry = find(registryId, userId);
+            targetRegistry = find(transferRequest.getTargetRegistryId(), userId);
+        } else {
+            targetRegistry = find(transferRequest.getTargetRegistryId(), userId);
+            sourceRegistry = find(registryId, userId);
+        }
 
         if (Objects.isNull(sourceRegistry)) {
-            throw new RegistryNotFoundException(String.format("Source registry '%s' not found for user: '%s'", registryId, userId));
+            throw RegistryNotFoundException.source(registryId, userId);
         }
 
         if (Objects.isNull(targetRegistry)) {
-            throw new RegistryNotFoundException(String.format("Target registry '%s' not found for user: '%s'",
-                    transferRequest.getTargetRegistryId(), userId));
+            throw RegistryNotFoundException.target(transferRequest.getTargetRegistryId(), userId);
         }
 
-        if (sourceRegistry.getAmount().floatValue() < transferRequest.getAmount().floatValue()) {
-            throw new InvalidRequestException(String.format("Not enough funds for the transfer. Source amount: %s, requested transfer: %s",
-                    sourceRegistry.getAmount(), transferRequest.getAmount()));
+        Money amount = Money.of(transferRequest.getAmount());
+
+        if (sourceRegistry.getAmount().isLessThan(amount)) {
+            throw InvalidRequestException.insufficientFunds(sourceRegistry.getAmount(), transferRequest.getAmount());
+        }
+
+        sourceRegistry.setAmount(sourceRegistry.getAmount().subtract(amount));
+        targetRegistry.setAmount(targetRegistry.getAmount().add(amount));
+        eventPublisher.publishEvent(BalanceChangedEvent.transferOut(userId, registryId, amount.toBigDecimal(), sourceRegistry.getAmount().toBigDecimal()));
+        eventPublisher.publishEvent(BalanceChangedEvent.transferIn(userId, transferRequest.getTargetRegistryId(), amount.toBigDecimal(), targetRegistry.getAmount().toBigDecimal()));
+    }
+
+    /**
+     * Applies the transfers in request order after loading every registry involved with a single query.
+     * Changes are flushed once, on commit.
+     */
+    @Measured("batch-transfer")
+    @RetryOnConflict
+    @Transactional
+    @ShardedByUser
+    public BatchTransferResponse transferBatch(String userId, BatchTransferRequest batchTransferRequest) {
+        if (Objects.nonNull(balanceEngine)) {
+            return balanceEngine.transferBatch(userId, batchTransferRequest);
+        }
+
+        Set<String> registryIds = new HashSet<>();
+        for (BatchTransferItem item : batchTransferRequest.getTransfers()) {
+            registryIds.add(item.getSourceRegistryId());
+            registryIds.add(item.getTargetRegistryId());
+        }
+
+        Map<String, Registry> registries = new HashMap<>();
+        Map<String, Money> balances = new HashMap<>();
+        List<Registry> found = lockingMode == LockingMode.PESSIMISTIC
+                ? registryRepository.findLockedByUserIdAndIdInOrderById(userId, registryIds)
+                : registryRepository.findByUserIdAndIdIn(userId, registryIds);
+        for (Registry registry : found) {
+            registries.put(registry.getId(), registry);
+            balances.put(registry.getId(), registry.getAmount());
+        }
+
+        BatchTransferPlan plan = BatchTransferPlan.of(userId, batchTransferRequest, balances);
+
+        if (plan.getResponse().isApplied()) {
+            plan.getBalances().forEach((registryId, amount) -> registries.get(registryId).setAmount(amount));
+            plan.getEvents().forEach(eventPublisher::publishEvent);
+        }
+
+        return plan.getResponse();
+    }
+
+    /**
+     * Debits the source and credits the target with one UPDATE each, in registry id order to avoid deadlocks.
+     * The affected rows tell whether it worked, lookups only happen to explain a failure, which rolls the
+     * other UPDATE back. Balances for the events are read while the UPDATEs still hold the row locks.
+     */
+    private void transferAtomically(String userId, String registryId, TransferRequest transferRequest) {
+        String targetRegistryId = transferRequest.getTargetRegistryId();
+        Money amount = Money.of(transferRequest.getAmount());
+        boolean transferred;
+
+        if (registryId.compareTo(targetRegistryId) <= 0) {
+            transferred = registryRepository.debit(registryId, userId, amount) == 1
+                    && registryRepository.credit(targetRegistryId, userId, amount) == 1;
+        } else {
+            transferred = registryRepository.credit(targetRegistryId, userId, amount) == 1
+                    && registryRepository.debit(registryId, userId, amount) == 1;
+        }
+
+        if (!transferred) {
+            throw transferRejected(userId, registryId, transferRequest);
+        }
+
+        eventPublisher.publishEvent(BalanceChangedEvent.transferOut(userId, registryId, amount.toBigDecimal(),
+                registryRepository.findAmountByIdAndUserId(registryId, userId).toBigDecimal()));
+        eventPublisher.publishEvent(BalanceChangedEvent.transferIn(userId, targetRegistryId, amount.toBigDecimal(),
+                registryRepository.findAmountByIdAndUserId(targetRegistryId, userId).toBigDecimal()));
+    }
+
+    private RuntimeException transferRejected(String userId, String registryId, TransferRequest transferRequest) {
+        if (!registryRepository.existsByIdAndUserId(registryId, userId)) {
+            return RegistryNotFoundException.source(registryId, userId);
+        }
+
+        if (!registryRepository.existsByIdAndUserId(transferRequest.getTargetRegistryId(), userId)) {
+            return RegistryNotFoundException.target(transferRequest.getTargetRegistryId(), userId);
+        }
+
+        return InvalidRequestException.insufficientFunds(registryRepository.findAmountByIdAndUserId(registryId, userId), transferRequest.getAmount());
+    }
+
+    private Registry find(String registryId, String userId) {
+        return lockingMode == LockingMode.PESSIMISTIC
+                ? registryRepository.findLockedByIdAndUserId(registryId, userId)
+                : registryRepository.findByIdAndUserId(registryId, userId);
+    }
+
+    private RegistryResponse withCurrentAmount(RegistryResponse response) {
+        if (Objects.nonNull(balanceEngine)) {
+            response.setAmount(balanceEngine.currentAmount(response.getId(), response.getAmount()));
         }
 
-        sourceRegistry.setAmount(sourceRegistry.getAmount().subtract(transferRequest.getAmount()));
-        targetRegistry.setAmount(targetRegistry.getAmount().add(transferRequest.getAmount()));
+        return response;
     }
 }
@@ -0,0 +1,158 @@
+package com.petke.budgeting.service;
+
+import com.petke.budgeting.repository.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Moves every user stored on a shard other than the one {@link ShardRouter} maps it to, after shards were appended
+ * to {@code budgeting.sharding.urls}. Runs at startup with {@code --budgeting.sharding.rebalance=true} and
+ * {@code --spring.main.web-application-type=none}, then exits. Offline only: nothing may write meanwhile, so it refuses
+ * to start in a web application serving requests.
+ * <p>
+ * A user's rows are copied into its shard in one transaction, skipping rows already there, then deleted from the old
+ * shard in another, so an interrupted run is finished by running it again. Maintained totals of moved users are
+ * dropped on both shards and rebuilt on their next read.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "budgeting.sharding.urls")
+public class ShardRebalancer implements ApplicationRunner {
+
+    private static final String SELECT_USERS = "SELECT user_id FROM registry WHERE user_id IS NOT NULL "
+            + "UNION SELECT user_id FROM ledger_entry WHERE user_id IS NOT NULL "
+            + "UNION SELECT user_id FROM idempotency_record WHERE user_id IS NOT NULL";
+    private static final String DELETE_USER_TOTAL = "DELETE FROM user_total WHERE user_id = ?";
+
+    /**
+     * Tables holding user data and how to select the rows of one user, in copy order; deletes run in reverse
+     * because {@code registry_history} finds its rows through {@code registry}.
+     */
+    private static final List<Map.Entry<String, String>> TABLES = List.of(
+            Map.entry("registry", "user_id = ?"),
+            Map.entry("ledger_entry", "user_id = ?"),
+            Map.entry("registry_history", "registry_id IN (SELECT id FROM registry WHERE user_id = ?)"),
+            Map.entry("idempotency_record", "user_id = ?"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transaction;
+    private final ShardRouter shardRouter;
+    private final ApplicationContext applicationContext;
+    private final boolean onStartup;
+
+    public ShardRebalancer(JdbcTemplate jdbcTemplate,
+                           PlatformTransactionManager transactionManager,
+                           ShardRouter shardRouter,
+                           ApplicationContext applicationContext,
+                           @Value("${budgeting.sharding.rebalance:false}") boolean onStartup) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.shardRouter = shardRouter;
+        this.applicationContext = applicationContext;
+        this.onStartup = onStartup;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!onStartup) {
+            return;
+        }
+
+        if (applicationContext instanceof WebApplicationContext) {
+            throw new IllegalStateException("Shards are rebalanced offline only, "
+                    + "start with --spring.main.web-application-type=none so no request writes meanwhile");
+        }
+        rebalance();
+    }
+
+    /**
+     * @return the number of users moved
+     */
+    public long rebalance() {
+        long started = System.nanoTime();
+        long[] moved = new long[TABLES.size() + 1];
+
+        shardRouter.forEach(source -> {
+            for (String userId : jdbcTemplate.queryForList(SELECT_USERS, String.class)) {
+                int owner = shardRouter.shardOf(userId);
+
+                if (owner != source) {
+                    move(userId, owner, moved);
+                    moved[TABLES.size()]++;
+                }
+            }
+        });
+
+        log.info("Moved {} users between {} shards in {} ms: {}", moved[TABLES.size()], shardRouter.count(),
+                (System.nanoTime() - started) / 1_000_000, describe(moved));
+        return moved[TABLES.size()];
+    }
+
+    /**
+     * Copies the rows of the user from the shard of the caller into its owner shard, then deletes them from the caller's.
+     */
+    private void move(String userId, int owner, long[] moved) {
+        List<List<Map<String, Object>>> rows = new ArrayList<>(TABLES.size());
+        for (Map.Entry<String, String> table : TABLES) {
+            rows.add(jdbcTemplate.queryForList("SELECT * FROM " + table.getKey() + " WHERE " + table.getValue(), userId));
+        }
+
+        shardRouter.on(owner, () -> transaction.execute(status -> {
+            for (int table = 0; table < TABLES.size(); table++) {
+                moved[table] += insert(TABLES.get(table).getKey(), rows.get(table));
+            }
+            return jdbcTemplate.update(DELETE_USER_TOTAL, userId);
+        }));
+
+        transaction.execute(status -> {
+            for (int table = TABLES.size() - 1; table >= 0; table--) {
+                jdbcTemplate.update("DELETE FROM " + TABLES.get(table).getKey() + " WHERE " + TABLES.get(table).getValue(), userId);
+            }
+            return jdbcTemplate.update(DELETE_USER_TOTAL, userId);
+        });
+    }
+
+    /**
+     * @return the number of rows inserted, rows whose key already exists are skipped
+     */
+    private long insert(String table, List<Map<String, Object>> rows) {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+
+        List<String> columns = new ArrayList<>(rows.get(0).keySet());
+        String sql = "INSERT IGNORE INTO " + table + " (" + String.join(", ", columns) + ") VALUES ("
+                + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+
+        long inserted = 0;
+        for (int count : jdbcTemplate.batchUpdate(sql, rows.stream()
+                .map(row -> columns.stream().map(row::get).toArray())
+                .collect(Collectors.toList()))) {
+            inserted += Math.max(count, 0);
+        }
+        return inserted;
+    }
+
+    private static String describe(long[] moved) {
+        List<String> counts = new ArrayList<>(TABLES.size());
+        for (int table = 0; table < TABLES.size(); table++) {
+            counts.add(TABLES.get(table).getKey() + "=" + moved[table]);
+        }
+        return String.join(", ", counts);
+    }
+}
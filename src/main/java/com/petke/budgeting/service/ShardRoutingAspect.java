@@ -0,0 +1,32 @@
+package com.petke.budgeting.service;
+
+import com.petke.budgeting.repository.ShardRouter;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Routes {@link ShardedByUser} methods to the shard of their user. Ordered before every other aspect and the
+ * transaction interceptor, so retries, metrics and the transaction all run on that shard.
+ */
+@Aspect
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 3)
+@ConditionalOnProperty(name = "budgeting.sharding.urls")
+public class ShardRoutingAspect {
+
+    private final ShardRouter shardRouter;
+
+    public ShardRoutingAspect(ShardRouter shardRouter) {
+        this.shardRouter = shardRouter;
+    }
+
+    @Around("@annotation(com.petke.budgeting.service.ShardedByUser)")
+    public Object route(ProceedingJoinPoint joinPoint) throws Throwable {
+        return shardRouter.onShardOf((String) joinPoint.getArgs()[0], joinPoint::proceed);
+    }
+}
@@ -0,0 +1,94 @@
+package com.petke.budgeting.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Token buckets per user and {@link RateLimit}, refilled at {@code permits-per-second} up to {@code burst} tokens;
+ * a rate of {@code 0} disables the limit. A bucket is kept as the single time at which it is full again, taking a
+ * token pushes that time one refill interval further, so acquiring is one compare-and-set and never locks.
+ * Users are kept in a bounded cache and dropped after {@code idle-seconds} without requests, by then their buckets
+ * are full again, unless the idle time is set below {@code burst / permits-per-second}.
+ */
+@Component
+public class UserRateLimiter {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final Cache<String, AtomicLongArray> buckets;
+    private final long[] refillNanos = new long[RateLimit.values().length];
+    private final long[] capacityNanos = new long[RateLimit.values().length];
+    // Bucket times are relative to the start, so a new bucket holding 0 is full whatever System.nanoTime returns.
+    private final long origin = System.nanoTime();
+
+    public UserRateLimiter(@Value("${budgeting.rate-limit.read.permits-per-second:100}") double readRate,
+                           @Value("${budgeting.rate-limit.read.burst:200}") int readBurst,
+                           @Value("${budgeting.rate-limit.recharge.permits-per-second:20}") double rechargeRate,
+                           @Value("${budgeting.rate-limit.recharge.burst:50}") int rechargeBurst,
+                           @Value("${budgeting.rate-limit.transfer.permits-per-second:20}") double transferRate,
+                           @Value("${budgeting.rate-limit.transfer.burst:50}") int transferBurst,
+                           @Value("${budgeting.rate-limit.maximum-users:100000}") long maximumUsers,
+                           @Value("${budgeting.rate-limit.idle-seconds:60}") long idleSeconds) {
+        this.buckets = CacheBuilder.newBuilder()
+                .maximumSize(maximumUsers)
+                .expireAfterAccess(idleSeconds, TimeUnit.SECONDS)
+                .build();
+        configure(RateLimit.READ, readRate, readBurst);
+        configure(RateLimit.RECHARGE, rechargeRate, rechargeBurst);
+        configure(RateLimit.TRANSFER, transferRate, transferBurst);
+    }
+
+    /**
+     * Takes a token from the bucket of the user.
+     *
+     * @return {@code 0} if the token was taken, otherwise the nanoseconds until the bucket holds one again
+     */
+    public long tryAcquire(String userId, RateLimit limit) {
+        long refill = refillNanos[limit.ordinal()];
+        if (refill == 0) {
+            return 0;
+        }
+
+        AtomicLongArray userBuckets = bucketsOf(userId);
+        long now = System.nanoTime() - origin;
+        while (true) {
+            long fullAt = userBuckets.get(limit.ordinal());
+            long nextFullAt = Math.max(fullAt, now) + refill;
+            long wait = nextFullAt - now - capacityNanos[limit.ordinal()];
+
+            if (wait > 0) {
+                return wait;
+            }
+            if (userBuckets.compareAndSet(limit.ordinal(), fullAt, nextFullAt)) {
+                return 0;
+            }
+        }
+    }
+
+    private AtomicLongArray bucketsOf(String userId) {
+        AtomicLongArray userBuckets = buckets.getIfPresent(userId);
+        if (Objects.nonNull(userBuckets)) {
+            return userBuckets;
+        }
+
+        try {
+            return buckets.get(userId, () -> new AtomicLongArray(RateLimit.values().length));
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void configure(RateLimit limit, double permitsPerSecond, int burst) {
+        if (permitsPerSecond > 0) {
+            refillNanos[limit.ordinal()] = Math.max(1, (long) (NANOS_PER_SECOND / permitsPerSecond));
+            capacityNanos[limit.ordinal()] = refillNanos[limit.ordinal()] * Math.max(burst, 1);
+        }
+    }
+}
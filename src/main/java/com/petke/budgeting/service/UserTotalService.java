@@ -0,0 +1,119 @@
+package com.petke.budgeting.service;
+
+import com.petke.budgeting.exception.RegistryNotFoundException;
+import com.petke.budgeting.model.BalanceOperation;
+import com.petke.budgeting.model.Money;
+import com.petke.budgeting.model.UserTotal;
+import com.petke.budgeting.model.event.BalanceChangedEvent;
+import com.petke.budgeting.model.response.UserTotalCheck;
+import com.petke.budgeting.model.response.UserTotalResponse;
+import com.petke.budgeting.repository.RegistryRepository;
+import com.petke.budgeting.repository.UserTotalRepository;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Keeps one running total per user in the {@code user_total} table. Recharges add their amount in the transaction
+ * that applies them, transfers move money between registries of the same user and leave the total alone.
+ * A total is initialized from the registry rows the first time it is read or changed; registries created or
+ * deleted outside of the API are only picked up by {@link #rebuild(String)}. With the {@link BalanceEngine} sums are
+ * taken over its in-memory balances, the registry rows trail them by up to a flush interval.
+ */
+@Service
+public class UserTotalService {
+
+    private final UserTotalRepository userTotalRepository;
+    private final RegistryRepository registryRepository;
+    private final BalanceEngine balanceEngine;
+
+    public UserTotalService(UserTotalRepository userTotalRepository, RegistryRepository registryRepository,
+                            ObjectProvider<BalanceEngine> balanceEngine) {
+        this.userTotalRepository = userTotalRepository;
+        this.registryRepository = registryRepository;
+        this.balanceEngine = balanceEngine.getIfAvailable();
+    }
+
+    @Measured("total")
+    @Transactional
+    @ShardedByUser
+    public UserTotalResponse findByUserId(String userId) {
+        return new UserTotalResponse(userId, load(userId).getTotal());
+    }
+
+    /**
+     * Compares the maintained total with the sum of the registry rows, a full scan of the user's registries.
+     */
+    @Measured("total-check")
+    @Transactional
+    @ShardedByUser
+    public UserTotalCheck check(String userId) {
+        Money total = load(userId).getTotal();
+        Money registrySum = registrySum(userId);
+        return new UserTotalCheck(userId, total, registrySum, total.equals(registrySum));
+    }
+
+    @Measured("total-rebuild")
+    @Transactional
+    @ShardedByUser
+    public UserTotalCheck rebuild(String userId) {
+        int rebuilt = Objects.isNull(balanceEngine)
+                ? userTotalRepository.rebuild(userId)
+                : userTotalRepository.set(userId, registrySum(userId));
+        if (rebuilt == 0) {
+            load(userId);
+        }
+        return check(userId);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onBalanceChanged(BalanceChangedEvent event) {
+        if (event.getOperation() != BalanceOperation.RECHARGE) {
+            return;
+        }
+
+        String userId = event.getUserId();
+        // An initialized total already includes this recharge, the registry row was updated earlier in the transaction.
+        // The balance engine only applies it after commit, its total is initialized without it.
+        if (userTotalRepository.add(userId, Money.of(event.getAmount())) == 0
+                && (create(userId) == 0 || Objects.nonNull(balanceEngine))) {
+            userTotalRepository.add(userId, Money.of(event.getAmount()));
+        }
+    }
+
+    private UserTotal load(String userId) {
+        Optional<UserTotal> total = userTotalRepository.findById(userId);
+
+        if (total.isPresent()) {
+            return total.get();
+        }
+
+        if (!registryRepository.existsByUserId(userId)) {
+            throw RegistryNotFoundException.user(userId);
+        }
+
+        create(userId);
+        return userTotalRepository.findById(userId).orElseThrow();
+    }
+
+    private int create(String userId) {
+        return Objects.isNull(balanceEngine)
+                ? userTotalRepository.initialize(userId)
+                : userTotalRepository.create(userId, registrySum(userId).toBigDecimal());
+    }
+
+    private Money registrySum(String userId) {
+        if (Objects.isNull(balanceEngine)) {
+            return Money.of(registryRepository.sumAmountByUserId(userId));
+        }
+
+        return registryRepository.findResponsesByUserId(userId).stream()
+                .map(registry -> balanceEngine.currentAmount(registry.getId(), registry.getAmount()))
+                .reduce(Money.ZERO, Money::add);
+    }
+}
@@ -1,4 +1,4 @@
-INSERT IGNORE INTO `registry` (id, label, user_id, amount) VALUES ('1', 'Wallet', '1', 1000);
-INSERT IGNORE INTO `registry` (id, label, user_id, amount) VALUES ('2', 'Savings', '1', 5000);
-INSERT IGNORE INTO `registry` (id, label, user_id, amount) VALUES ('3', 'Insurance Policy', '1', 0);
-INSERT IGNORE INTO `registry` (id, label, user_id, amount) VALUES ('4', 'Food Expenses', '1', 0);
\ No newline at end of file
+INSERT IGNORE INTO `registry` (id, label, user_id, amount, version) VALUES ('1', 'Wallet', '1', 1000, 0);
+INSERT IGNORE INTO `registry` (id, label, user_id, amount, version) VALUES ('2', 'Savings', '1', 5000, 0);
+INSERT IGNORE INTO `registry` (id, label, user_id, amount, version) VALUES ('3', 'Insurance Policy', '1', 0, 0);
+INSERT IGNORE INTO `registry` (id, label, user_id, amount, version) VALUES ('4', 'Food Expenses', '1', 0, 0);
@@ -0,0 +1,27 @@
+-- Databases of the first release were created by Hibernate and hold registry without version; they are baselined
+-- at version 0, so this migration runs on them too and only adds what is missing.
+CREATE TABLE IF NOT EXISTS registry (
+    id VARCHAR(255) NOT NULL,
+    amount DECIMAL(19, 2),
+    label VARCHAR(255),
+    user_id VARCHAR(255),
+    version BIGINT,
+    PRIMARY KEY (id)
+);
+
+ALTER TABLE registry ADD COLUMN IF NOT EXISTS version BIGINT;
+UPDATE registry SET version = 0 WHERE version IS NULL;
+
+CREATE TABLE IF NOT EXISTS ledger_entry (
+    id VARCHAR(255) NOT NULL,
+    amount DECIMAL(19, 2),
+    balance DECIMAL(19, 2),
+    created_at BIGINT,
+    operation VARCHAR(255),
+    registry_id VARCHAR(255),
+    sequence BIGINT NOT NULL,
+    user_id VARCHAR(255),
+    PRIMARY KEY (id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_ledger_entry_registry_sequence ON ledger_entry (registry_id, sequence);
@@ -0,0 +1,2 @@
+-- Serves findByUserId and findByIdAndUserId from the index alone.
+CREATE INDEX idx_registry_user_id ON registry (user_id, id);
@@ -0,0 +1,4 @@
+-- Generated ids are 32 hex characters, see TimeOrderedIdGenerator.
+ALTER TABLE registry ALTER COLUMN id VARCHAR(32) NOT NULL;
+ALTER TABLE ledger_entry ALTER COLUMN id VARCHAR(32) NOT NULL;
+ALTER TABLE ledger_entry ALTER COLUMN registry_id VARCHAR(32);
@@ -0,0 +1,10 @@
+CREATE TABLE idempotency_record (
+    id VARCHAR(512) NOT NULL,
+    fingerprint VARCHAR(32),
+    error_type VARCHAR(255),
+    error_message VARCHAR(1024),
+    created_at BIGINT,
+    PRIMARY KEY (id)
+);
+
+CREATE INDEX idx_idempotency_record_created_at ON idempotency_record (created_at);
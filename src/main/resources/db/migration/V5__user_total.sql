@@ -0,0 +1,7 @@
+CREATE TABLE user_total (
+    user_id VARCHAR(255) NOT NULL,
+    total DECIMAL(19, 2) NOT NULL,
+    PRIMARY KEY (user_id)
+);
+
+INSERT INTO user_total (user_id, total) SELECT user_id, SUM(amount) FROM registry WHERE user_id IS NOT NULL GROUP BY user_id;
@@ -0,0 +1,11 @@
+-- Inflows, outflows and closing balance of a registry per hour, day and month, see RegistryHistory.
+CREATE TABLE registry_history (
+    registry_id VARCHAR(32) NOT NULL,
+    resolution VARCHAR(5) NOT NULL,
+    bucket_start BIGINT NOT NULL,
+    inflow DECIMAL(19, 2) NOT NULL,
+    outflow DECIMAL(19, 2) NOT NULL,
+    balance DECIMAL(19, 2),
+    operations BIGINT NOT NULL,
+    PRIMARY KEY (registry_id, resolution, bucket_start)
+);
@@ -0,0 +1 @@
+ALTER TABLE idempotency_record ADD COLUMN error_code VARCHAR(32);
@@ -0,0 +1,2 @@
+-- Ledger sequence of the closing balance of a bucket, an older entry flushed later must not replace it.
+ALTER TABLE registry_history ADD COLUMN balance_sequence BIGINT;
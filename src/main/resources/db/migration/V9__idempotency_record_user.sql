@@ -0,0 +1,10 @@
+-- Owner of a record, ids are "<user id>:<key>" and user ids may contain ':' themselves. Existing records get the
+-- longest user id with registries that prefixes them, else the part before the first ':'.
+ALTER TABLE idempotency_record ADD COLUMN user_id VARCHAR(255);
+
+UPDATE idempotency_record SET user_id = (SELECT MAX(r.user_id) FROM registry r
+                                         WHERE LOCATE(CONCAT(r.user_id, ':'), idempotency_record.id) = 1)
+WHERE user_id IS NULL;
+UPDATE idempotency_record SET user_id = SUBSTRING(id, 1, LOCATE(':', id) - 1) WHERE user_id IS NULL;
+
+CREATE INDEX idx_idempotency_record_user_id ON idempotency_record (user_id);
@@ -0,0 +1,5 @@
+-- Demo registries, applied by Flyway once and again only when this file changes, see application-faststart.properties.
+INSERT IGNORE INTO registry (id, label, user_id, amount, version) VALUES ('1', 'Wallet', '1', 1000, 0);
+INSERT IGNORE INTO registry (id, label, user_id, amount, version) VALUES ('2', 'Savings', '1', 5000, 0);
+INSERT IGNORE INTO registry (id, label, user_id, amount, version) VALUES ('3', 'Insurance Policy', '1', 0, 0);
+INSERT IGNORE INTO registry (id, label, user_id, amount, version) VALUES ('4', 'Food Expenses', '1', 0, 0);
@@ -0,0 +1,224 @@
+package com.petke.budgeting;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.petke.budgeting.model.Registry;
+import com.petke.budgeting.model.event.BalanceChangedEvent;
+import com.petke.budgeting.model.request.RechargeRequest;
+import com.petke.budgeting.model.response.BalanceDelta;
+import com.petke.budgeting.repository.RegistryRepository;
+import com.petke.budgeting.service.BalanceEventBus;
+import com.petke.budgeting.service.RegistryService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@AutoConfigureMockMvc
+@SpringBootTest(properties = {
+        "budgeting.events.buffer-size=4",
+        "budgeting.events.dispatch-threads=1",
+        "budgeting.events.sender-threads=3",
+        "budgeting.events.send-timeout-ms=1000"})
+public class BalanceEventTests {
+
+    private static final int USERS = 100;
+    private static final int STREAMS_PER_USER = 100;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private RegistryRepository registryRepository;
+
+    @Autowired
+    private RegistryService registryService;
+
+    @Autowired
+    private BalanceEventBus balanceEventBus;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void shouldPushCommittedBalanceChanges_ToEveryOpenStream() throws Exception {
+        List<Registry> wallets = new ArrayList<>(USERS);
+        for (int user = 0; user < USERS; user++) {
+            wallets.add(registryRepository.save(new Registry("Wallet", "events-" + user, new BigDecimal("100"))));
+        }
+
+        List<List<MvcResult>> streams = new ArrayList<>(USERS);
+        for (Registry wallet : wallets) {
+            List<MvcResult> userStreams = new ArrayList<>(STREAMS_PER_USER);
+            for (int stream = 0; stream < STREAMS_PER_USER; stream++) {
+                userStreams.add(mockMvc.perform(get("/api/budget/" + wallet.getUserId() + "/registry/events"))
+                        .andExpect(request().asyncStarted())
+                        .andReturn());
+            }
+            streams.add(userStreams);
+        }
+        assertThat(meterRegistry.get("budgeting.events.subscriptions").gauge().value()).isEqualTo(USERS * STREAMS_PER_USER);
+
+        RechargeRequest rechargeRequest = new RechargeRequest();
+        rechargeRequest.setAmount(new BigDecimal("5"));
+        for (Registry wallet : wallets) {
+            registryService.recharge(wallet.getUserId(), wallet.getId(), rechargeRequest);
+        }
+
+        for (int user = 0; user < USERS; user++) {
+            String event = "event:balance\ndata:{\"id\":\"" + wallets.get(user).getId() + "\",\"amount\":105.00}\n\n";
+            for (MvcResult stream : streams.get(user)) {
+                await(() -> contentOf(stream).equals(event));
+            }
+        }
+
+        streams.forEach(userStreams -> userStreams.forEach(stream -> stream.getRequest().getAsyncContext().complete()));
+        await(() -> meterRegistry.get("budgeting.events.subscriptions").gauge().value() == 0);
+    }
+
+    @Test
+    void shouldRejectStream_OfUnknownUser() throws Exception {
+        mockMvc.perform(get("/api/budget/events-unknown/registry/events")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void shouldCoalesceAndDropDeltas_OfSlowStream() {
+        String userId = "events-slow";
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<BalanceDelta> received = Collections.synchronizedList(new ArrayList<>());
+        double dropped = deltas("dropped");
+        double coalesced = deltas("coalesced");
+
+        BalanceEventBus.Subscription subscription = balanceEventBus.subscribe(userId, delta -> {
+            sending.countDown();
+            Uninterruptibles.awaitUninterruptibly(release);
+            received.add(delta);
+        });
+        try {
+            balanceEventBus.onBalanceChanged(BalanceChangedEvent.recharge(userId, "r0", BigDecimal.ONE, BigDecimal.ONE));
+            Uninterruptibles.awaitUninterruptibly(sending);
+
+            for (int registry = 1; registry <= 6; registry++) {
+                balanceEventBus.onBalanceChanged(BalanceChangedEvent.recharge(userId, "r" + registry, BigDecimal.ONE, BigDecimal.ONE));
+            }
+            balanceEventBus.onBalanceChanged(BalanceChangedEvent.recharge(userId, "r6", BigDecimal.ONE, new BigDecimal("2")));
+            release.countDown();
+
+            await(() -> received.size() == 5);
+            assertThat(received).extracting(BalanceDelta::getId).containsExactly("r0", "r3", "r4", "r5", "r6");
+            assertThat(received.get(4).getAmount().toBigDecimal()).isEqualTo(new BigDecimal("2.00"));
+            assertThat(deltas("dropped")).isEqualTo(dropped + 2);
+            assertThat(deltas("coalesced")).isEqualTo(coalesced + 1);
+        } finally {
+            release.countDown();
+            subscription.cancel();
+        }
+    }
+
+    @Test
+    void shouldCloseStalledStream_WithoutHoldingUpHealthyOne() {
+        String userId = "events-stalled";
+        CountDownLatch closed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<BalanceDelta> received = Collections.synchronizedList(new ArrayList<>());
+        double stalled = deltas("stalled");
+
+        BalanceEventBus.Subscription stalledSubscription = balanceEventBus.subscribe(userId, new BalanceEventBus.DeltaSink() {
+            @Override
+            public void send(BalanceDelta delta) {
+                Uninterruptibles.awaitUninterruptibly(release);
+            }
+
+            @Override
+            public void close() {
+                closed.countDown();
+            }
+        });
+        BalanceEventBus.Subscription healthySubscription = balanceEventBus.subscribe(userId, received::add);
+        try {
+            balanceEventBus.onBalanceChanged(BalanceChangedEvent.recharge(userId, "r0", BigDecimal.ONE, BigDecimal.ONE));
+            await(() -> received.size() == 1);
+            assertThat(Uninterruptibles.awaitUninterruptibly(closed, 30, TimeUnit.SECONDS)).isTrue();
+
+            balanceEventBus.onBalanceChanged(BalanceChangedEvent.recharge(userId, "r1", BigDecimal.ONE, BigDecimal.ONE));
+            await(() -> received.size() == 2);
+            assertThat(received).extracting(BalanceDelta::getId).containsExactly("r0", "r1");
+            assertThat(deltas("stalled")).isEqualTo(stalled + 1);
+        } finally {
+            release.countDown();
+            stalledSubscription.cancel();
+            healthySubscription.cancel();
+        }
+    }
+
+    @Test
+    void shouldCloseStreams_WhileEverySenderIsStalled() {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch closed = new CountDownLatch(1);
+        List<BalanceEventBus.Subscription> subscriptions = new ArrayList<>();
+        double stalled = deltas("stalled");
+        double rejected = deltas("rejected");
+
+        try {
+            for (int stream = 0; stream < 3; stream++) {
+                subscriptions.add(balanceEventBus.subscribe("events-stuck", delta -> Uninterruptibles.awaitUninterruptibly(release)));
+            }
+            balanceEventBus.onBalanceChanged(BalanceChangedEvent.recharge("events-stuck", "r0", BigDecimal.ONE, BigDecimal.ONE));
+            await(() -> deltas("stalled") == stalled + 3);
+
+            subscriptions.add(balanceEventBus.subscribe("events-next", new BalanceEventBus.DeltaSink() {
+                @Override
+                public void send(BalanceDelta delta) {
+                }
+
+                @Override
+                public void close() {
+                    closed.countDown();
+                }
+            }));
+            balanceEventBus.onBalanceChanged(BalanceChangedEvent.recharge("events-next", "r1", BigDecimal.ONE, BigDecimal.ONE));
+
+            assertThat(Uninterruptibles.awaitUninterruptibly(closed, 30, TimeUnit.SECONDS)).isTrue();
+            assertThat(deltas("rejected")).isEqualTo(rejected + 1);
+        } finally {
+            release.countDown();
+            subscriptions.forEach(BalanceEventBus.Subscription::cancel);
+        }
+    }
+
+    private double deltas(String outcome) {
+        return meterRegistry.get("budgeting.events.deltas").tag("outcome", outcome).counter().count();
+    }
+
+    private static String contentOf(MvcResult stream) {
+        try {
+            return stream.getResponse().getContentAsString();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition met within 30s").isLessThan(deadline);
+            Uninterruptibles.sleepUninterruptibly(10, TimeUnit.MILLISECONDS);
+        }
+    }
+}
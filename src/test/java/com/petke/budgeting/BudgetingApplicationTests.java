@@ -1,32 +1,57 @@
 package com.petke.budgeting;
 
+import com.petke.budgeting.model.BalanceOperation;
+import com.petke.budgeting.model.LedgerEntry;
 import com.petke.budgeting.model.Registry;
+import com.petke.budgeting.model.event.BalanceChangedEvent;
+import com.petke.budgeting.model.response.RegistryListing;
+import com.petke.budgeting.repository.LedgerEntryRepository;
 import com.petke.budgeting.repository.RegistryRepository;
+import com.petke.budgeting.repository.UserTotalRepository;
+import com.petke.budgeting.service.LedgerService;
+import com.petke.budgeting.service.LedgerWriter;
+import com.petke.budgeting.service.RegistryCache;
+import com.petke.budgeting.service.RegistryHistory;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 
 @AutoConfigureMockMvc
-@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"budgeting.bulk.endpoints-enabled=true", "budgeting.async.enabled=true"})
 public class BudgetingApplicationTests {
 
     private final static String ERROR_PATH = "$.error";
+    private final static String CODE_PATH = "$.code";
     private final static String MESSAGE_PATH = "$.message";
     private final static String PATH_PATH = "$.path";
     private final static String STATUS_PATH = "$.status";
@@ -38,9 +63,34 @@ public class BudgetingApplicationTests {
     @Autowired
     private RegistryRepository registryRepository;
 
+    @Autowired
+    private LedgerEntryRepository ledgerEntryRepository;
+
+    @Autowired
+    private LedgerWriter ledgerWriter;
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private RegistryCache registryCache;
+
+    @Autowired
+    private RegistryHistory registryHistory;
+
+    @Autowired
+    private UserTotalRepository userTotalRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @BeforeEach
     void init() {
+        ledgerWriter.flush();
+        ledgerEntryRepository.deleteAll();
         registryRepository.deleteAll();
+        userTotalRepository.deleteAll();
+        registryCache.invalidateAll();
     }
 
     @Test
@@ -74,6 +124,116 @@ public class BudgetingApplicationTests {
                 .andExpect(jsonPath("$[3].amount", is(0.0)));
     }
 
+    @Test
+    void shouldServeCachedRegistries_UntilBalanceChanges() throws Exception {
+        final String userId = "1";
+        Registry wallet = registryRepository.save(new Registry("Wallet", userId, new BigDecimal("1000")));
+        double hits = cacheHits();
+
+        mockMvc
+                .perform(get("/api/budget/1/registry"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].amount", is(1000.0)));
+        mockMvc
+                .perform(get("/api/budget/1/registry"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].amount", is(1000.0)));
+
+        assertThat(cacheHits()).isEqualTo(hits + 1);
+
+        mockMvc
+                .perform(post(composeRechargeUrl(userId, wallet.getId()))
+                        .content(composeRechargeBody(2500))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        mockMvc
+                .perform(get("/api/budget/1/registry"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].amount", is(3500.0)));
+    }
+
+    @Test
+    void shouldShareInFlightListingLoad_UntilBalanceChanges() throws Exception {
+        final String userId = "coalescing";
+        RegistryListing stale = new RegistryListing(List.of(), new byte[0], "\"stale\"");
+        RegistryListing fresh = new RegistryListing(List.of(), new byte[0], "\"fresh\"");
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        double coalesced = meterRegistry.get("budgeting.registry-cache.coalesced").counter().count();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<RegistryListing> first = executor.submit(() -> registryCache.get(userId, () -> {
+                loading.countDown();
+                release.await();
+                return stale;
+            }));
+            loading.await();
+            Future<RegistryListing> joined = executor.submit(() -> registryCache.get(userId, () -> fresh));
+            while (meterRegistry.get("budgeting.registry-cache.coalesced").counter().count() == coalesced) {
+                Thread.sleep(1);
+            }
+
+            registryCache.invalidate(userId);
+            assertThat(registryCache.get(userId, () -> fresh)).isSameAs(fresh);
+
+            release.countDown();
+            assertThat(first.get()).isSameAs(stale);
+            assertThat(joined.get()).isSameAs(stale);
+            assertThat(registryCache.get(userId, () -> stale)).isSameAs(fresh);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldReturnNotModified_WhenETagMatches() throws Exception {
+        final String userId = "1";
+        registryRepository.save(new Registry("Wallet", userId, new BigDecimal("1000")));
+
+        String etag = mockMvc
+                .perform(get("/api/budget/1/registry"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn()
+                .getResponse()
+                .getHeader(HttpHeaders.ETAG);
+
+        mockMvc
+                .perform(get("/api/budget/1/registry").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void shouldReturnNotModified_WhenAnyETagMatches_OnAsyncApi() throws Exception {
+        registryRepository.save(new Registry("Wallet", "1", new BigDecimal("1000")));
+
+        MvcResult result = mockMvc
+                .perform(get("/api/async/budget/1/registry"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String etag = mockMvc
+                .perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getHeader(HttpHeaders.ETAG);
+
+        for (String ifNoneMatch : List.of("\"other\", " + etag, "W/" + etag)) {
+            result = mockMvc
+                    .perform(get("/api/async/budget/1/registry").header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            mockMvc
+                    .perform(asyncDispatch(result))
+                    .andExpect(status().isNotModified())
+                    .andExpect(content().string(""));
+        }
+    }
+
     @Test
     void shouldReturnNotFound_WhenAccountWithGivenIdWasNotFound() throws Exception {
         final String userId = "1";
@@ -91,6 +251,7 @@ public class BudgetingApplicationTests {
                 .perform(get("/api/budget/2/registry"))
                 .andExpect(status().isNotFound())
                 .andExpect(jsonPath(ERROR_PATH, is("RegistryNotFoundException")))
+                .andExpect(jsonPath(CODE_PATH, is("USER_NOT_FOUND")))
                 .andExpect(jsonPath(MESSAGE_PATH, is("No registries found for userId: '2'")))
                 .andExpect(jsonPath(PATH_PATH, is("/api/budget/2/registry")))
                 .andExpect(jsonPath(STATUS_PATH, is(HttpStatus.NOT_FOUND.value())));
@@ -110,7 +271,7 @@ public class BudgetingApplicationTests {
                 .andExpect(content().string(""));
 
         Registry updatedWallet = registryRepository.findByUserId(userId).get(0);
-        assertThat(updatedWallet.getAmount()).isEqualTo(new BigDecimal("3500.00"));
+        assertThat(updatedWallet.getAmount().toBigDecimal()).isEqualTo(new BigDecimal("3500.00"));
         assertThat(updatedWallet.getId()).isNotBlank();
         assertThat(updatedWallet.getLabel()).isEqualTo("Wallet");
         assertThat(updatedWallet.getUserId()).isEqualTo(userId);
@@ -144,6 +305,7 @@ public class BudgetingApplicationTests {
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNotFound())
                 .andExpect(jsonPath(ERROR_PATH, is("RegistryNotFoundException")))
+                .andExpect(jsonPath(CODE_PATH, is("REGISTRY_NOT_FOUND")))
                 .andExpect(jsonPath(MESSAGE_PATH, is("Registry 'not_existing_registry_id' not found for user: '1'")))
                 .andExpect(jsonPath(PATH_PATH, is(composeRechargeUrl(userId, "not_existing_registry_id"))))
                 .andExpect(jsonPath(STATUS_PATH, is(HttpStatus.NOT_FOUND.value())));
@@ -159,6 +321,7 @@ public class BudgetingApplicationTests {
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNotFound())
                 .andExpect(jsonPath(ERROR_PATH, is("RegistryNotFoundException")))
+                .andExpect(jsonPath(CODE_PATH, is("SOURCE_REGISTRY_NOT_FOUND")))
                 .andExpect(jsonPath(MESSAGE_PATH, is("Source registry 'not_existing_registry_id' not found for user: '1'")))
                 .andExpect(jsonPath(PATH_PATH, is(composeTransferUrl(userId, "not_existing_registry_id"))))
                 .andExpect(jsonPath(STATUS_PATH, is(HttpStatus.NOT_FOUND.value())));
@@ -176,6 +339,7 @@ public class BudgetingApplicationTests {
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNotFound())
                 .andExpect(jsonPath(ERROR_PATH, is("RegistryNotFoundException")))
+                .andExpect(jsonPath(CODE_PATH, is("TARGET_REGISTRY_NOT_FOUND")))
                 .andExpect(jsonPath(MESSAGE_PATH, is("Target registry 'not_existing_registry_id' not found for user: '1'")))
                 .andExpect(jsonPath(PATH_PATH, is(composeTransferUrl(userId, saved.getId()))))
                 .andExpect(jsonPath(STATUS_PATH, is(HttpStatus.NOT_FOUND.value())));
@@ -194,11 +358,29 @@ public class BudgetingApplicationTests {
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isBadRequest())
                 .andExpect(jsonPath(ERROR_PATH, is("InvalidRequestException")))
+                .andExpect(jsonPath(CODE_PATH, is("INSUFFICIENT_FUNDS")))
                 .andExpect(jsonPath(MESSAGE_PATH, is("Not enough funds for the transfer. Source amount: 1000.00, requested transfer: 2500")))
                 .andExpect(jsonPath(PATH_PATH, is(composeTransferUrl(userId, saved.getId()))))
                 .andExpect(jsonPath(STATUS_PATH, is(HttpStatus.BAD_REQUEST.value())));
     }
 
+    @Test
+    void shouldReturnBadRequest_WhenSourceLacksOneCent_OnLargeTransfer() throws Exception {
+        final String userId = "1";
+
+        Registry saved = registryRepository.save(new Registry("Source", userId, new BigDecimal("16777216")));
+        Registry target = registryRepository.save(new Registry("Target", userId, new BigDecimal("0")));
+
+        mockMvc
+                .perform(post(composeTransferUrl(userId, saved.getId()))
+                        .content(String.format("{\"amount\":16777216.01, \"targetRegistryId\" : \"%s\"}", target.getId()))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath(MESSAGE_PATH, is("Not enough funds for the transfer. Source amount: 16777216.00, requested transfer: 16777216.01")));
+
+        assertThat(registryRepository.findByIdAndUserId(saved.getId(), userId).getAmount().toBigDecimal()).isEqualTo(new BigDecimal("16777216.00"));
+    }
+
     @Test
     void shouldReturnBadRequest_WhenAmountIsNegative_OnTransfer() throws Exception {
         final String userId = "1";
@@ -239,6 +421,102 @@ public class BudgetingApplicationTests {
                 .andExpect(jsonPath(STATUS_PATH, is(HttpStatus.BAD_REQUEST.value())));
     }
 
+    @Test
+    void shouldAppendLedgerEntries_OnRechargeAndTransfer() throws Exception {
+        final String userId = "1";
+        Registry source = registryRepository.save(new Registry("Source", userId, new BigDecimal("1000")));
+        Registry target = registryRepository.save(new Registry("Target", userId, new BigDecimal("0")));
+
+        mockMvc
+                .perform(post(composeRechargeUrl(userId, source.getId()))
+                        .content(composeRechargeBody(500))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        mockMvc
+                .perform(post(composeTransferUrl(userId, source.getId()))
+                        .content(composeTransferBody(target.getId(), 300))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        ledgerWriter.flush();
+
+        List<LedgerEntry> sourceEntries = ledgerEntryRepository.findByRegistryIdOrderBySequence(source.getId());
+        assertThat(sourceEntries).extracting(LedgerEntry::getOperation)
+                .containsExactly(BalanceOperation.RECHARGE, BalanceOperation.TRANSFER_OUT);
+        assertThat(sourceEntries).extracting(LedgerEntry::getAmount)
+                .containsExactly(new BigDecimal("500.00"), new BigDecimal("-300.00"));
+        assertThat(ledgerService.balanceOf(source.getId())).isEqualTo(new BigDecimal("1200.00"));
+        assertThat(ledgerService.balanceOf(target.getId())).isEqualTo(new BigDecimal("300.00"));
+    }
+
+    @Test
+    void shouldApplyEveryTransfer_OnBatchTransfer() throws Exception {
+        final String userId = "1";
+        Registry wallet = registryRepository.save(new Registry("Wallet", userId, new BigDecimal("1000")));
+        Registry savings = registryRepository.save(new Registry("Savings", userId, new BigDecimal("0")));
+        Registry food = registryRepository.save(new Registry("Food expenses", userId, new BigDecimal("0")));
+
+        mockMvc
+                .perform(post(composeBatchTransferUrl(userId))
+                        .content(composeBatchTransferBody("ALL_OR_NOTHING",
+                                composeBatchTransferItem(wallet.getId(), savings.getId(), 600),
+                                composeBatchTransferItem(savings.getId(), food.getId(), 200)))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.applied", is(true)))
+                .andExpect(jsonPath("$.results[0].status", is("APPLIED")))
+                .andExpect(jsonPath("$.results[1].status", is("APPLIED")));
+
+        assertThat(registryRepository.findByIdAndUserId(wallet.getId(), userId).getAmount().toBigDecimal()).isEqualTo(new BigDecimal("400.00"));
+        assertThat(registryRepository.findByIdAndUserId(savings.getId(), userId).getAmount().toBigDecimal()).isEqualTo(new BigDecimal("400.00"));
+        assertThat(registryRepository.findByIdAndUserId(food.getId(), userId).getAmount().toBigDecimal()).isEqualTo(new BigDecimal("200.00"));
+    }
+
+    @Test
+    void shouldApplyNothing_WhenAnyTransferIsRejected_OnAllOrNothingBatchTransfer() throws Exception {
+        final String userId = "1";
+        Registry wallet = registryRepository.save(new Registry("Wallet", userId, new BigDecimal("1000")));
+        Registry savings = registryRepository.save(new Registry("Savings", userId, new BigDecimal("0")));
+
+        mockMvc
+                .perform(post(composeBatchTransferUrl(userId))
+                        .content(composeBatchTransferBody("ALL_OR_NOTHING",
+                                composeBatchTransferItem(wallet.getId(), savings.getId(), 600),
+                                composeBatchTransferItem(wallet.getId(), savings.getId(), 600)))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.applied", is(false)))
+                .andExpect(jsonPath("$.results[0].status", is("SKIPPED")))
+                .andExpect(jsonPath("$.results[1].status", is("REJECTED")))
+                .andExpect(jsonPath("$.results[1].code", is("INSUFFICIENT_FUNDS")))
+                .andExpect(jsonPath("$.results[1].message", is("Not enough funds for the transfer. Source amount: 400.00, requested transfer: 600")));
+
+        assertThat(registryRepository.findByIdAndUserId(wallet.getId(), userId).getAmount().toBigDecimal()).isEqualTo(new BigDecimal("1000.00"));
+    }
+
+    @Test
+    void shouldApplyValidTransfers_OnBestEffortBatchTransfer() throws Exception {
+        final String userId = "1";
+        Registry wallet = registryRepository.save(new Registry("Wallet", userId, new BigDecimal("1000")));
+        Registry savings = registryRepository.save(new Registry("Savings", userId, new BigDecimal("0")));
+
+        mockMvc
+                .perform(post(composeBatchTransferUrl(userId))
+                        .content(composeBatchTransferBody("BEST_EFFORT",
+                                composeBatchTransferItem(wallet.getId(), "not_existing_registry_id", 100),
+                                composeBatchTransferItem(wallet.getId(), savings.getId(), 600)))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.applied", is(true)))
+                .andExpect(jsonPath("$.results[0].status", is("REJECTED")))
+                .andExpect(jsonPath("$.results[0].message", is("Target registry 'not_existing_registry_id' not found for user: '1'")))
+                .andExpect(jsonPath("$.results[1].status", is("APPLIED")));
+
+        assertThat(registryRepository.findByIdAndUserId(wallet.getId(), userId).getAmount().toBigDecimal()).isEqualTo(new BigDecimal("400.00"));
+        assertThat(registryRepository.findByIdAndUserId(savings.getId(), userId).getAmount().toBigDecimal()).isEqualTo(new BigDecimal("600.00"));
+    }
+
     /**
      * 1. A recharge is executed for the “Wallet” register with an amount of 2500.This should increase
      * the register’s balance to 3500.
@@ -275,7 +553,7 @@ public class BudgetingApplicationTests {
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk());
 
-        Assertions.assertThat(registryRepository.findByIdAndUserId(wallet.getId(), userId).getAmount()).isEqualTo(new BigDecimal("3500.00"));
+        Assertions.assertThat(registryRepository.findByIdAndUserId(wallet.getId(), userId).getAmount().toBigDecimal()).isEqualTo(new BigDecimal("3500.00"));
 
         mockMvc
                 .perform(post(composeTransferUrl(userId, wallet.getId()))
@@ -283,8 +561,8 @@ public class BudgetingApplicationTests {
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk());
 
-        Assertions.assertThat(registryRepository.findByIdAndUserId(wallet.getId(), userId).getAmount()).isEqualTo(new BigDecimal("2000.00"));
-        Assertions.assertThat(registryRepository.findByIdAndUserId(food.getId(), userId).getAmount()).isEqualTo(new BigDecimal("1500.00"));
+        Assertions.assertThat(registryRepository.findByIdAndUserId(wallet.getId(), userId).getAmount().toBigDecimal()).isEqualTo(new BigDecimal("2000.00"));
+        Assertions.assertThat(registryRepository.findByIdAndUserId(food.getId(), userId).getAmount().toBigDecimal()).isEqualTo(new BigDecimal("1500.00"));
 
         mockMvc
                 .perform(post(composeTransferUrl(userId, savings.getId()))
@@ -292,8 +570,8 @@ public class BudgetingApplicationTests {
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk());
 
-        Assertions.assertThat(registryRepository.findByIdAndUserId(savings.getId(), userId).getAmount()).isEqualTo(new BigDecimal("4500.00"));
-        Assertions.assertThat(registryRepository.findByIdAndUserId(insurance.getId(), userId).getAmount()).isEqualTo(new BigDecimal("500.00"));
+        Assertions.assertThat(registryRepository.findByIdAndUserId(savings.getId(), userId).getAmount().toBigDecimal()).isEqualTo(new BigDecimal("4500.00"));
+        Assertions.assertThat(registryRepository.findByIdAndUserId(insurance.getId(), userId).getAmount().toBigDecimal()).isEqualTo(new BigDecimal("500.00"));
 
         mockMvc
                 .perform(post(composeTransferUrl(userId, wallet.getId()))
@@ -301,8 +579,8 @@ public class BudgetingApplicationTests {
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk());
 
-        Assertions.assertThat(registryRepository.findByIdAndUserId(savings.getId(), userId).getAmount()).isEqualTo(new BigDecimal("5500.00"));
-        Assertions.assertThat(registryRepository.findByIdAndUserId(wallet.getId(), userId).getAmount()).isEqualTo(new BigDecimal("1000.00"));
+        Assertions.assertThat(registryRepository.findByIdAndUserId(savings.getId(), userId).getAmount().toBigDecimal()).isEqualTo(new BigDecimal("5500.00"));
+        Assertions.assertThat(registryRepository.findByIdAndUserId(wallet.getId(), userId).getAmount().toBigDecimal()).isEqualTo(new BigDecimal("1000.00"));
 
         mockMvc
                 .perform(get("/api/budget/1/registry"))
@@ -322,10 +600,255 @@ public class BudgetingApplicationTests {
                 .andExpect(jsonPath("$[3].amount", is(1500.0)));
     }
 
+    @Test
+    void shouldPageRegistriesById_WhenLimitIsGiven() throws Exception {
+        final String userId = "1";
+        List<String> ids = new ArrayList<>();
+        for (String label : List.of("Wallet", "Savings", "Food Expenses")) {
+            ids.add(registryRepository.save(new Registry(label, userId, new BigDecimal("100"))).getId());
+        }
+        Collections.sort(ids);
+
+        mockMvc
+                .perform(get("/api/budget/1/registry").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.registries", hasSize(2)))
+                .andExpect(jsonPath("$.registries[0].id", is(ids.get(0))))
+                .andExpect(jsonPath("$.registries[1].id", is(ids.get(1))))
+                .andExpect(jsonPath("$.nextCursor", is(ids.get(1))));
+
+        mockMvc
+                .perform(get("/api/budget/1/registry").param("limit", "2").param("after", ids.get(1)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.registries", hasSize(1)))
+                .andExpect(jsonPath("$.registries[0].id", is(ids.get(2))))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    void shouldStreamRegistriesAsNdjson() throws Exception {
+        final String userId = "1";
+        registryRepository.save(new Registry("Wallet", userId, new BigDecimal("1000")));
+        registryRepository.save(new Registry("Savings", userId, new BigDecimal("5000")));
+
+        MvcResult result = mockMvc
+                .perform(get("/api/budget/1/registry").accept("application/x-ndjson"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc
+                .perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(body.split("\n")).hasSize(2).allSatisfy(line -> assertThat(line).contains("\"amount\":"));
+    }
+
+    @Test
+    void shouldImportAndExportRegistries() throws Exception {
+        Registry wallet = registryRepository.save(new Registry("Wallet", "1", new BigDecimal("1000")));
+        mockMvc
+                .perform(get("/api/budget/1/total"))
+                .andExpect(jsonPath("$.total", is(1000.00)));
+
+        mockMvc
+                .perform(post("/api/budget/registries")
+                        .contentType("text/csv")
+                        .content("id,label,userId,amount\n"
+                                + wallet.getId() + ",Wallet,1,1\n"
+                                + ",\"Savings, long term\",1,250.5\n"
+                                + "imported-1,Cash,2,10\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported", is(2)))
+                .andExpect(jsonPath("$.skipped", is(1)));
+
+        mockMvc
+                .perform(get("/api/budget/1/total"))
+                .andExpect(jsonPath("$.total", is(1250.50)));
+
+        mockMvc
+                .perform(post("/api/budget/registries")
+                        .contentType("application/x-ndjson")
+                        .content("{\"label\":\"Card\",\"userId\":\"3\",\"amount\":5}\n{\"label\":\"Card\",\"amount\":5}\n"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath(MESSAGE_PATH, is("Line 2: userId is required, 0 registries were imported before it")));
+
+        mockMvc
+                .perform(post("/api/budget/registries")
+                        .contentType("application/x-ndjson")
+                        .content("{\"label\":\"" + "x".repeat(256) + "\",\"userId\":\"3\",\"amount\":5}\n"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath(MESSAGE_PATH, is("Line 1: label is longer than 255 characters, 0 registries were imported before it")));
+
+        MvcResult result = mockMvc
+                .perform(get("/api/budget/registries").accept("text/csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc
+                .perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(body.split("\n"))
+                .hasSize(4)
+                .contains("id,label,userId,amount", wallet.getId() + ",Wallet,1,1000.00", "imported-1,Cash,2,10.00");
+    }
+
+    @Test
+    void shouldRechargeOnce_WhenRetriedWithSameIdempotencyKey() throws Exception {
+        final String userId = "1";
+        final String idempotencyKey = UUID.randomUUID().toString();
+        Registry wallet = registryRepository.save(new Registry("Wallet", userId, new BigDecimal("1000")));
+
+        // The same amount, written differently by the retry.
+        for (String body : List.of(composeRechargeBody(100), "{\"amount\": 100.00}")) {
+            mockMvc
+                    .perform(post(composeRechargeUrl(userId, wallet.getId()))
+                            .header("Idempotency-Key", idempotencyKey)
+                            .content(body)
+                            .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk());
+        }
+
+        mockMvc
+                .perform(post(composeRechargeUrl(userId, wallet.getId()))
+                        .header("Idempotency-Key", idempotencyKey)
+                        .content(composeRechargeBody(200))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath(MESSAGE_PATH, is(String.format("Idempotency-Key '%s' was already used for a different request", idempotencyKey))));
+
+        assertThat(registryRepository.findByIdAndUserId(wallet.getId(), userId).getAmount().toBigDecimal()).isEqualTo(new BigDecimal("1100.00"));
+    }
+
+    @Test
+    void shouldExposeOperationMetrics_OnPrometheusEndpoint() throws Exception {
+        final String userId = "1";
+        Registry wallet = registryRepository.save(new Registry("Wallet", userId, new BigDecimal("1000")));
+
+        mockMvc
+                .perform(post(composeRechargeUrl(userId, wallet.getId()))
+                        .content(composeRechargeBody(100))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        mockMvc
+                .perform(post(composeRechargeUrl(userId, "not_existing_registry_id"))
+                        .content(composeRechargeBody(100))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+
+        mockMvc
+                .perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("budgeting_operation_seconds_count{operation=\"recharge\",outcome=\"success\",}")))
+                .andExpect(content().string(containsString("budgeting_operation_seconds_count{operation=\"recharge\",outcome=\"RegistryNotFoundException\",}")))
+                .andExpect(content().string(containsString("budgeting_operation_seconds_bucket{operation=\"recharge\"")))
+                .andExpect(content().string(containsString("budgeting_operation_queries_count{operation=\"recharge\",}")))
+                .andExpect(content().string(containsString("hikaricp_connections_acquire_seconds_count")));
+    }
+
+    @Test
+    void shouldMaintainUserTotal_OnRechargeAndTransfer() throws Exception {
+        final String userId = "1";
+        Registry wallet = registryRepository.save(new Registry("Wallet", userId, new BigDecimal("1000")));
+        Registry savings = registryRepository.save(new Registry("Savings", userId, new BigDecimal("0")));
+
+        mockMvc
+                .perform(get("/api/budget/" + userId + "/total"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total", is(1000.00)));
+
+        mockMvc
+                .perform(post(composeRechargeUrl(userId, savings.getId()))
+                        .content(composeRechargeBody(500))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        mockMvc
+                .perform(post(composeTransferUrl(userId, wallet.getId()))
+                        .content(composeTransferBody(savings.getId(), 300))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        mockMvc
+                .perform(get("/api/budget/" + userId + "/total/check"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total", is(1500.00)))
+                .andExpect(jsonPath("$.consistent", is(true)));
+
+        registryRepository.save(new Registry("Cash", userId, new BigDecimal("20")));
+
+        mockMvc
+                .perform(get("/api/budget/" + userId + "/total/check"))
+                .andExpect(jsonPath("$.registrySum", is(1520.00)))
+                .andExpect(jsonPath("$.consistent", is(false)));
+        mockMvc
+                .perform(post("/api/budget/" + userId + "/total/rebuild"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total", is(1520.00)))
+                .andExpect(jsonPath("$.consistent", is(true)));
+
+        mockMvc
+                .perform(get("/api/budget/2/total"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void shouldRollUpHistory_IntoBuckets() throws Exception {
+        final String userId = "1";
+        Registry wallet = registryRepository.save(new Registry("Wallet", userId, new BigDecimal("1000")));
+        Registry savings = registryRepository.save(new Registry("Savings", userId, new BigDecimal("0")));
+        long from = System.currentTimeMillis() - 24 * 60 * 60 * 1000;
+
+        mockMvc
+                .perform(post(composeRechargeUrl(userId, wallet.getId()))
+                        .content(composeRechargeBody(200))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        for (int i = 0; i < 2; i++) {
+            mockMvc
+                    .perform(post(composeTransferUrl(userId, wallet.getId()))
+                            .content(composeTransferBody(savings.getId(), 300))
+                            .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk());
+        }
+        ledgerWriter.flush();
+        // Sequenced before the changes above but appended after them, its balance is not the closing one.
+        registryHistory.record(List.of(new LedgerEntry(0, BalanceChangedEvent.recharge(userId, wallet.getId(), BigDecimal.ZERO, new BigDecimal("1000")))));
+
+        mockMvc
+                .perform(get(String.format("/api/budget/%s/registry/%s/history?resolution=MONTH&from=%d", userId, wallet.getId(), from)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[-1].inflow", is(200.00)))
+                .andExpect(jsonPath("$[-1].outflow", is(600.00)))
+                .andExpect(jsonPath("$[-1].balance", is(600.00)))
+                .andExpect(jsonPath("$[-1].operations", is(4)));
+
+        mockMvc
+                .perform(get(String.format("/api/budget/%s/registry/%s/history?resolution=HOUR&from=0", userId, wallet.getId())))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath(CODE_PATH, is("INVALID_HISTORY_RANGE")));
+
+        mockMvc
+                .perform(get(String.format("/api/budget/2/registry/%s/history?from=%d", wallet.getId(), from)))
+                .andExpect(status().isNotFound());
+    }
+
+    private double cacheHits() {
+        return meterRegistry.get("cache.gets").tag("cache", "registry.listing").tag("result", "hit")
+                .functionCounter().count();
+    }
+
     private String composeTransferUrl(String userId, String registryId) {
         return String.format("/api/budget/%s/registry/%s/transfer", userId, registryId);
     }
 
+    private String composeBatchTransferUrl(String userId) {
+        return String.format("/api/budget/%s/registry/transfers", userId);
+    }
+
     private String composeRechargeUrl(String userId, String registryId) {
         return String.format("/api/budget/%s/registry/%s/recharge", userId, registryId);
     }
@@ -337,4 +860,13 @@ public class BudgetingApplicationTests {
     private String composeTransferBody(String targetRegistryId, int amount) {
         return String.format("{\"amount\":%s, \"targetRegistryId\" : \"%s\"}", amount, targetRegistryId);
     }
+
+    private String composeBatchTransferItem(String sourceRegistryId, String targetRegistryId, int amount) {
+        return String.format("{\"amount\":%s, \"sourceRegistryId\" : \"%s\", \"targetRegistryId\" : \"%s\"}",
+                amount, sourceRegistryId, targetRegistryId);
+    }
+
+    private String composeBatchTransferBody(String mode, String... items) {
+        return String.format("{\"mode\":\"%s\", \"transfers\" : [%s]}", mode, String.join(",", items));
+    }
 }
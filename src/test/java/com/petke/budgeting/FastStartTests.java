@@ -0,0 +1,34 @@
+package com.petke.budgeting;
+
+import com.petke.budgeting.service.RegistryService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import springfox.documentation.spring.web.plugins.Docket;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ActiveProfiles("faststart")
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:faststart;DB_CLOSE_DELAY=-1;mode=MySQL")
+public class FastStartTests {
+
+    @Autowired
+    private ApplicationContext context;
+
+    @Autowired
+    private RegistryService registryService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void shouldSeedOnceThroughFlyway_AndSkipSwagger() {
+        assertThat(registryService.findByUserId("1")).hasSize(4);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM \"flyway_schema_history\" WHERE \"script\" = 'R__demo_registries.sql'",
+                Integer.class)).isEqualTo(1);
+        assertThat(context.getBeanNamesForType(Docket.class)).isEmpty();
+    }
+}
@@ -0,0 +1,85 @@
+package com.petke.budgeting;
+
+import com.petke.budgeting.exception.ErrorCode;
+import com.petke.budgeting.exception.RegistryNotFoundException;
+import com.petke.budgeting.repository.IdempotencyRecordRepository;
+import com.petke.budgeting.repository.ShardRouter;
+import com.petke.budgeting.service.IdempotencyService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = "budgeting.idempotency.persistent=true")
+public class IdempotencyTests {
+
+    private final static String USER_ID = "idempotency";
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Test
+    void shouldRunOnce_WhenDuplicatesArriveConcurrently() throws Exception {
+        String key = UUID.randomUUID().toString();
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<?> first = executor.submit(() -> idempotencyService.execute(USER_ID, key, "recharge", () -> {
+                runs.incrementAndGet();
+                running.countDown();
+                await(release);
+            }));
+            running.await();
+            Future<?> duplicate = executor.submit(() -> idempotencyService.execute(USER_ID, key, "recharge", runs::incrementAndGet));
+            release.countDown();
+
+            first.get(5, TimeUnit.SECONDS);
+            duplicate.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void shouldReplayRecordedOutcome_AfterRestart() {
+        String key = UUID.randomUUID().toString();
+
+        assertThatThrownBy(() -> idempotencyService.execute(USER_ID, key, "transfer", () -> {
+            throw RegistryNotFoundException.source("x", USER_ID);
+        })).isInstanceOf(RegistryNotFoundException.class);
+
+        IdempotencyService restarted = new IdempotencyService(idempotencyRecordRepository, new ShardRouter(List.of(), 128), 100, 60, true);
+        assertThatThrownBy(() -> restarted.execute(USER_ID, key, "transfer", () -> {
+            throw new AssertionError("Recorded request must not run again");
+        })).isInstanceOf(RegistryNotFoundException.class)
+                .hasMessage("Source registry 'x' not found for user: '" + USER_ID + "'")
+                .hasFieldOrPropertyWithValue("code", ErrorCode.SOURCE_REGISTRY_NOT_FOUND);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.petke.budgeting;
+
+import com.petke.budgeting.model.Money;
+import com.petke.budgeting.model.Registry;
+import com.petke.budgeting.model.event.BalanceChangedEvent;
+import com.petke.budgeting.model.request.RechargeRequest;
+import com.petke.budgeting.model.request.TransferRequest;
+import com.petke.budgeting.repository.RegistryRepository;
+import com.petke.budgeting.repository.UserTotalRepository;
+import com.petke.budgeting.service.BalanceEngine;
+import com.petke.budgeting.service.RegistryService;
+import com.petke.budgeting.service.UserTotalService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Many threads hammering the same registries must not lose a single update, in any locking mode.
+ */
+@SpringBootTest(properties = {
+        "budgeting.locking=optimistic",
+        "budgeting.retry.max-attempts=100",
+        "logging.level.org.hibernate.engine.jdbc.batch.internal.BatchingBatch=OFF"})
+public class RegistryConcurrencyTests {
+
+    private final static int THREADS = 16;
+    private final static int OPERATIONS_PER_THREAD = 25;
+    private final static String USER_ID = "concurrency";
+
+    @Autowired
+    private RegistryService registryService;
+
+    @Autowired
+    private RegistryRepository registryRepository;
+
+    @Autowired
+    private UserTotalRepository userTotalRepository;
+
+    @Autowired
+    private UserTotalService userTotalService;
+
+    @BeforeEach
+    void init() {
+        registryRepository.deleteAll();
+        userTotalRepository.deleteAll();
+    }
+
+    @Test
+    void shouldNotLoseUpdates_OnConcurrentRecharges() throws Exception {
+        assertNoLostRecharges(registryService, registryRepository);
+        assertThat(userTotalService.check(USER_ID).isConsistent()).isTrue();
+    }
+
+    @Test
+    void shouldKeepTotalAmount_OnConcurrentOppositeTransfers() throws Exception {
+        assertTotalKeptOnTransfers(registryService, registryRepository);
+    }
+
+    @Nested
+    @SpringBootTest(properties = "budgeting.locking=atomic")
+    class AtomicUpdates {
+
+        @Autowired
+        private RegistryService atomicRegistryService;
+
+        @Test
+        void shouldNotLoseUpdates_OnConcurrentRecharges() throws Exception {
+            assertNoLostRecharges(atomicRegistryService, registryRepository);
+            assertThat(userTotalService.check(USER_ID).isConsistent()).isTrue();
+        }
+
+        @Test
+        void shouldKeepTotalAmount_OnConcurrentOppositeTransfers() throws Exception {
+            assertTotalKeptOnTransfers(atomicRegistryService, registryRepository);
+        }
+    }
+
+    @Nested
+    @SpringBootTest(properties = "budgeting.locking=pessimistic")
+    class PessimisticLocking {
+
+        @Autowired
+        private RegistryService pessimisticRegistryService;
+
+        @Test
+        void shouldNotLoseUpdates_OnConcurrentRecharges() throws Exception {
+            assertNoLostRecharges(pessimisticRegistryService, registryRepository);
+            assertThat(userTotalService.check(USER_ID).isConsistent()).isTrue();
+        }
+
+        @Test
+        void shouldKeepTotalAmount_OnConcurrentOppositeTransfers() throws Exception {
+            assertTotalKeptOnTransfers(pessimisticRegistryService, registryRepository);
+        }
+    }
+
+    @Nested
+    @SpringBootTest(properties = {
+            "budgeting.balance-engine.enabled=true",
+            "budgeting.balance-engine.flush-interval-ms=3600000",
+            "budgeting.balance-engine.idle-eviction-ms=0"})
+    @Import(FailingTotalWrite.class)
+    class BalanceEngineMode {
+
+        @Autowired
+        private FailingTotalWrite failingTotalWrite;
+
+        @Autowired
+        private RegistryService engineRegistryService;
+
+        @Autowired
+        private UserTotalService engineUserTotalService;
+
+        @Autowired
+        private BalanceEngine balanceEngine;
+
+        @Test
+        void shouldKeepUserTotal_OfBalancesNotWrittenBack() throws Exception {
+            Registry wallet = registryRepository.save(new Registry("Wallet", USER_ID, new BigDecimal("100")));
+            RechargeRequest rechargeRequest = new RechargeRequest();
+            rechargeRequest.setAmount(BigDecimal.ONE);
+
+            hammer(() -> engineRegistryService.recharge(USER_ID, wallet.getId(), rechargeRequest));
+
+            BigDecimal expected = new BigDecimal(100 + THREADS * OPERATIONS_PER_THREAD);
+            assertThat(engineUserTotalService.findByUserId(USER_ID).getTotal().toBigDecimal()).isEqualByComparingTo(expected);
+            assertThat(engineUserTotalService.check(USER_ID).isConsistent()).isTrue();
+            assertThat(engineUserTotalService.rebuild(USER_ID).getTotal().toBigDecimal()).isEqualByComparingTo(expected);
+            balanceEngine.flush();
+            assertThat(registryRepository.findByIdAndUserId(wallet.getId(), USER_ID).getAmount().toBigDecimal()).isEqualByComparingTo(expected);
+        }
+
+        @Test
+        void shouldApplyChangeOnce_WhenItsTransactionIsRetried() {
+            Registry wallet = registryRepository.save(new Registry("Wallet", USER_ID, new BigDecimal("100")));
+            Registry savings = registryRepository.save(new Registry("Savings", USER_ID, new BigDecimal("0")));
+            RechargeRequest rechargeRequest = new RechargeRequest();
+            rechargeRequest.setAmount(new BigDecimal("50"));
+            TransferRequest transferRequest = new TransferRequest();
+            transferRequest.setAmount(new BigDecimal("30"));
+            transferRequest.setTargetRegistryId(savings.getId());
+
+            failingTotalWrite.failOnce(wallet.getId());
+            engineRegistryService.recharge(USER_ID, wallet.getId(), rechargeRequest);
+            failingTotalWrite.failOnce(wallet.getId());
+            engineRegistryService.transfer(USER_ID, wallet.getId(), transferRequest);
+
+            assertThat(balanceEngine.currentAmount(wallet.getId(), Money.ZERO)).isEqualTo(Money.of(new BigDecimal("120")));
+            assertThat(balanceEngine.currentAmount(savings.getId(), Money.ZERO)).isEqualTo(Money.of(new BigDecimal("30")));
+            assertThat(engineUserTotalService.findByUserId(USER_ID).getTotal()).isEqualTo(Money.of(new BigDecimal("150")));
+            assertThat(engineUserTotalService.check(USER_ID).isConsistent()).isTrue();
+        }
+
+        @Test
+        void shouldDropBalances_OnceWrittenBack() throws Exception {
+            Registry wallet = registryRepository.save(new Registry("Wallet", USER_ID, new BigDecimal("100")));
+            RechargeRequest rechargeRequest = new RechargeRequest();
+            rechargeRequest.setAmount(new BigDecimal("5"));
+
+            for (int recharge = 1; recharge <= 2; recharge++) {
+                engineRegistryService.recharge(USER_ID, wallet.getId(), rechargeRequest);
+                assertThat(balanceEngine.currentAmount(wallet.getId(), Money.ZERO)).isEqualTo(Money.of(new BigDecimal(100 + 5 * recharge)));
+
+                Thread.sleep(1);
+                balanceEngine.flush();
+                assertThat(balanceEngine.currentAmount(wallet.getId(), Money.ZERO)).isEqualTo(Money.ZERO);
+                assertThat(registryRepository.findByIdAndUserId(wallet.getId(), USER_ID).getAmount().toBigDecimal())
+                        .isEqualByComparingTo(new BigDecimal(100 + 5 * recharge));
+            }
+        }
+    }
+
+    /**
+     * Fails the next transaction changing the registry when it commits, like a lock timeout on the {@code user_total} row.
+     */
+    static class FailingTotalWrite {
+
+        private final AtomicReference<String> registryId = new AtomicReference<>();
+
+        void failOnce(String registryId) {
+            this.registryId.set(registryId);
+        }
+
+        @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+        public void onBalanceChanged(BalanceChangedEvent event) {
+            if (registryId.compareAndSet(event.getRegistryId(), null)) {
+                throw new CannotAcquireLockException("Lock wait timeout on user_total");
+            }
+        }
+    }
+
+    private static void assertNoLostRecharges(RegistryService registryService, RegistryRepository registryRepository)
+            throws Exception {
+        Registry wallet = registryRepository.save(new Registry("Wallet", USER_ID, new BigDecimal("0")));
+        RechargeRequest rechargeRequest = new RechargeRequest();
+        rechargeRequest.setAmount(BigDecimal.ONE);
+
+        hammer(() -> registryService.recharge(USER_ID, wallet.getId(), rechargeRequest));
+
+        assertThat(registryRepository.findByIdAndUserId(wallet.getId(), USER_ID).getAmount().toBigDecimal())
+                .isEqualByComparingTo(new BigDecimal(THREADS * OPERATIONS_PER_THREAD));
+    }
+
+    private static void assertTotalKeptOnTransfers(RegistryService registryService, RegistryRepository registryRepository)
+            throws Exception {
+        Registry wallet = registryRepository.save(new Registry("Wallet", USER_ID, new BigDecimal("1000")));
+        Registry savings = registryRepository.save(new Registry("Savings", USER_ID, new BigDecimal("1000")));
+        TransferRequest toSavings = new TransferRequest();
+        toSavings.setAmount(BigDecimal.ONE);
+        toSavings.setTargetRegistryId(savings.getId());
+        TransferRequest toWallet = new TransferRequest();
+        toWallet.setAmount(BigDecimal.ONE);
+        toWallet.setTargetRegistryId(wallet.getId());
+
+        hammer(() -> {
+            if (ThreadLocalRandom.current().nextBoolean()) {
+                registryService.transfer(USER_ID, wallet.getId(), toSavings);
+            } else {
+                registryService.transfer(USER_ID, savings.getId(), toWallet);
+            }
+        });
+
+        BigDecimal walletAmount = registryRepository.findByIdAndUserId(wallet.getId(), USER_ID).getAmount().toBigDecimal();
+        BigDecimal savingsAmount = registryRepository.findByIdAndUserId(savings.getId(), USER_ID).getAmount().toBigDecimal();
+        assertThat(walletAmount.add(savingsAmount)).isEqualByComparingTo(new BigDecimal("2000"));
+    }
+
+    /**
+     * Runs the operation {@link #OPERATIONS_PER_THREAD} times on each of {@link #THREADS} threads started together.
+     */
+    private static void hammer(Runnable operation) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < OPERATIONS_PER_THREAD; j++) {
+                        operation.run();
+                    }
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
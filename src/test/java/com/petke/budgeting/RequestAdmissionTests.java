@@ -0,0 +1,83 @@
+package com.petke.budgeting;
+
+import com.petke.budgeting.controller.RegistryController;
+import com.petke.budgeting.controller.RequestAdmissionInterceptor;
+import com.petke.budgeting.exception.ServiceOverloadedException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@AutoConfigureMockMvc
+@SpringBootTest(properties = {
+        "budgeting.rate-limit.read.permits-per-second=0.1",
+        "budgeting.rate-limit.read.burst=2",
+        "budgeting.load-shedding.max-in-flight=1"})
+public class RequestAdmissionTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private RequestAdmissionInterceptor requestAdmissionInterceptor;
+
+    @Autowired
+    private RegistryController registryController;
+
+    @Test
+    void shouldRejectReads_OnceTheUserRanOutOfTokens() throws Exception {
+        mockMvc.perform(get("/api/budget/1/registry")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/budget/1/registry")).andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/budget/1/registry"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "10"))
+                .andExpect(jsonPath("$.code", is("RATE_LIMITED")))
+                .andExpect(jsonPath("$.message", is("Too many read requests for userId: '1'")));
+
+        mockMvc.perform(get("/api/budget/2/registry")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void shouldShedRequests_WhileMaxInFlightAreHandled() throws Exception {
+        HandlerMethod handler = new HandlerMethod(registryController, RegistryController.class.getMethod("getTotal", String.class));
+        MockHttpServletRequest first = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertThat(requestAdmissionInterceptor.preHandle(first, response, handler)).isTrue();
+        for (int attempt = 0; attempt < 3; attempt++) {
+            assertThatThrownBy(() -> requestAdmissionInterceptor.preHandle(requestOf("shed"), response, handler))
+                    .isInstanceOf(ServiceOverloadedException.class);
+        }
+
+        requestAdmissionInterceptor.afterCompletion(first, response, handler, null);
+        // Shed requests took no tokens, the user still has its whole burst.
+        for (int attempt = 0; attempt < 2; attempt++) {
+            MockHttpServletRequest next = requestOf("shed");
+            assertThat(requestAdmissionInterceptor.preHandle(next, response, handler)).isTrue();
+            requestAdmissionInterceptor.afterCompletion(next, response, handler, null);
+        }
+    }
+
+    private static MockHttpServletRequest requestOf(String userId) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, Map.of("userId", userId));
+        return request;
+    }
+}
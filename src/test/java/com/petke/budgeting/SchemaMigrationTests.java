@@ -0,0 +1,40 @@
+package com.petke.budgeting;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Databases of the first release, created by Hibernate with {@code ddl-auto=update}, are migrated on startup.
+ */
+public class SchemaMigrationTests {
+
+    private static final String URL = "jdbc:h2:mem:pre-flyway;DB_CLOSE_DELAY=-1;mode=MySQL";
+
+    @Test
+    void shouldMigrateDatabase_OfFirstRelease() {
+        JdbcTemplate firstRelease = new JdbcTemplate(new DriverManagerDataSource(URL, "sa", "password"));
+        firstRelease.execute("CREATE TABLE registry (id VARCHAR(255) NOT NULL, amount DECIMAL(19, 2), label VARCHAR(255), "
+                + "user_id VARCHAR(255), PRIMARY KEY (id))");
+        firstRelease.update("INSERT INTO registry (id, label, user_id, amount) VALUES ('4028b88171c1d2a80171c1d2b5e10000', 'Wallet', 'legacy', 250)");
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(BudgetingApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=" + URL, "--spring.datasource.initialization-mode=never", "--logging.level.root=WARN")) {
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+
+            assertThat(jdbcTemplate.queryForObject("SELECT MAX(\"version\") FROM \"flyway_schema_history\"", String.class)).isEqualTo("9");
+            assertThat(jdbcTemplate.queryForObject("SELECT version FROM registry WHERE user_id = 'legacy'", Long.class)).isZero();
+            assertThat(jdbcTemplate.queryForObject("SELECT total FROM user_total WHERE user_id = 'legacy'", BigDecimal.class))
+                    .isEqualTo(new BigDecimal("250.00"));
+            assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ledger_entry", Long.class)).isZero();
+        }
+    }
+}
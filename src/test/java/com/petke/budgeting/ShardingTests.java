@@ -0,0 +1,133 @@
+package com.petke.budgeting;
+
+import com.petke.budgeting.model.Registry;
+import com.petke.budgeting.model.request.RechargeRequest;
+import com.petke.budgeting.model.response.RegistryResponse;
+import com.petke.budgeting.repository.RegistryRepository;
+import com.petke.budgeting.repository.ShardRouter;
+import com.petke.budgeting.service.LedgerWriter;
+import com.petke.budgeting.service.RegistryService;
+import com.petke.budgeting.service.ShardRebalancer;
+import com.petke.budgeting.service.UserTotalService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Two in-memory shards: every user's rows have to live on the shard {@link ShardRouter} maps it to.
+ */
+@SpringBootTest(properties = {
+        "budgeting.sharding.urls=jdbc:h2:mem:sharding-tests-0;DB_CLOSE_DELAY=-1;mode=MySQL,jdbc:h2:mem:sharding-tests-1;DB_CLOSE_DELAY=-1;mode=MySQL",
+        "spring.datasource.initialization-mode=never"})
+public class ShardingTests {
+
+    private static final String COUNT_REGISTRIES = "SELECT COUNT(*) FROM registry WHERE user_id = ?";
+    private static final String COUNT_LEDGER_ENTRIES = "SELECT COUNT(*) FROM ledger_entry WHERE user_id = ?";
+    private static final String COUNT_IDEMPOTENCY_RECORDS = "SELECT COUNT(*) FROM idempotency_record WHERE user_id = ?";
+    private static final String INSERT_IDEMPOTENCY_RECORD = "INSERT INTO idempotency_record (id, user_id, fingerprint, created_at) "
+            + "VALUES (CONCAT(?, ':key'), ?, 'fingerprint', 0)";
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private RegistryService registryService;
+
+    @Autowired
+    private UserTotalService userTotalService;
+
+    @Autowired
+    private RegistryRepository registryRepository;
+
+    @Autowired
+    private LedgerWriter ledgerWriter;
+
+    @Autowired
+    private ShardRebalancer shardRebalancer;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Test
+    void shouldKeepRegistriesAndLedgerOfUser_OnItsShard() {
+        for (int shard = 0; shard < shardRouter.count(); shard++) {
+            String userId = userOnShard(shard);
+            Registry wallet = shardRouter.onShardOf(userId, () -> registryRepository.save(new Registry("Wallet", userId, new BigDecimal("100"))));
+
+            RechargeRequest rechargeRequest = new RechargeRequest();
+            rechargeRequest.setAmount(new BigDecimal("50"));
+            registryService.recharge(userId, wallet.getId(), rechargeRequest);
+            ledgerWriter.flush();
+
+            List<RegistryResponse> registries = registryService.findByUserId(userId);
+            assertThat(registries).hasSize(1);
+            assertThat(registries.get(0).getAmount().toBigDecimal()).isEqualTo(new BigDecimal("150.00"));
+            assertThat(userTotalService.check(userId).isConsistent()).isTrue();
+            assertThat(count(shard, COUNT_REGISTRIES, userId)).isEqualTo(1);
+            assertThat(count(shard, COUNT_LEDGER_ENTRIES, userId)).isEqualTo(1);
+            assertThat(count(1 - shard, COUNT_REGISTRIES, userId)).isZero();
+            assertThat(count(1 - shard, COUNT_LEDGER_ENTRIES, userId)).isZero();
+        }
+    }
+
+    @Test
+    void shouldMoveUsers_OnRebalance() {
+        String userId = userOnShard(1);
+        Registry wallet = shardRouter.on(0, () -> registryRepository.save(new Registry("Wallet", userId, new BigDecimal("100"))));
+        // Its record ids start with the one of the moved user, but it stays.
+        String neighbour;
+        do {
+            neighbour = userId + ":" + UUID.randomUUID();
+        } while (shardRouter.shardOf(neighbour) != 0);
+        for (String owner : List.of(userId, neighbour)) {
+            shardRouter.on(0, () -> jdbcTemplate.update(INSERT_IDEMPOTENCY_RECORD, owner, owner));
+        }
+
+        assertThat(shardRebalancer.rebalance()).isEqualTo(1);
+
+        assertThat(count(0, COUNT_REGISTRIES, userId)).isZero();
+        assertThat(count(1, COUNT_REGISTRIES, userId)).isEqualTo(1);
+        assertThat(count(1, COUNT_IDEMPOTENCY_RECORDS, userId)).isEqualTo(1);
+        assertThat(count(0, COUNT_IDEMPOTENCY_RECORDS, neighbour)).isEqualTo(1);
+        assertThat(registryService.findByUserId(userId)).extracting(RegistryResponse::getId).containsExactly(wallet.getId());
+        assertThat(shardRebalancer.rebalance()).isZero();
+    }
+
+    @Test
+    void shouldRefuseToRebalanceOnStartup_OfWebApplication() {
+        ShardRebalancer onStartup = new ShardRebalancer(jdbcTemplate, transactionManager, shardRouter, applicationContext, true);
+
+        assertThatThrownBy(() -> onStartup.run(new DefaultApplicationArguments()))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("--spring.main.web-application-type=none");
+    }
+
+    private String userOnShard(int shard) {
+        String userId;
+        do {
+            userId = "sharding-" + UUID.randomUUID();
+        } while (shardRouter.shardOf(userId) != shard);
+        return userId;
+    }
+
+    private long count(int shard, String sql, String userId) {
+        return shardRouter.on(shard, () -> jdbcTemplate.queryForObject(sql, Long.class, userId));
+    }
+}
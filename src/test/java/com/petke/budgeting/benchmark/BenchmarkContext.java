@@ -0,0 +1,94 @@
+package com.petke.budgeting.benchmark;
+
+import com.petke.budgeting.BudgetingApplication;
+import com.petke.budgeting.model.TimeOrderedIdGenerator;
+import com.petke.budgeting.repository.ShardRouter;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Boots the application against a private in-memory H2 database.
+ */
+final class BenchmarkContext {
+
+    private static final int SEED_BATCH_SIZE = 10_000;
+    private static final String INSERT_REGISTRY = "INSERT INTO registry (id, label, user_id, amount, version) VALUES (?, ?, ?, ?, 0)";
+
+    private BenchmarkContext() {
+    }
+
+    static ConfigurableApplicationContext start(String... properties) {
+        return start(WebApplicationType.NONE, properties);
+    }
+
+    /**
+     * Same as {@link #start(String...)} with an embedded web server listening on a random port.
+     */
+    static ConfigurableApplicationContext startWeb(String... properties) {
+        return start(WebApplicationType.SERVLET, Stream.concat(Stream.of("server.port=0"), Arrays.stream(properties)).toArray(String[]::new));
+    }
+
+    /**
+     * Properties are passed as command line arguments, so they take precedence over application.properties.
+     */
+    private static ConfigurableApplicationContext start(WebApplicationType webApplicationType, String... properties) {
+        String[] args = Stream
+                .concat(Stream.of(
+                        "spring.datasource.url=jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;mode=MySQL",
+                        "spring.datasource.initialization-mode=never",
+                        "logging.level.root=WARN"), Arrays.stream(properties))
+                .map(property -> "--" + property)
+                .toArray(String[]::new);
+
+        return new SpringApplicationBuilder(BudgetingApplication.class)
+                .web(webApplicationType)
+                .run(args);
+    }
+
+    /**
+     * Inserts {@code registriesPerUser} registries holding 1000000 for each of {@code users} users, with JDBC batches,
+     * each user into its shard.
+     *
+     * @return registry ids, the registries of user {@code n} start at index {@code n * registriesPerUser}
+     */
+    static List<String> seed(ConfigurableApplicationContext context, int users, int registriesPerUser) {
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        ShardRouter shardRouter = context.getBean(ShardRouter.class);
+        List<String> registryIds = new ArrayList<>(users * registriesPerUser);
+        Map<Integer, List<Object[]>> batches = new HashMap<>();
+
+        for (int user = 0; user < users; user++) {
+            int shard = shardRouter.shardOf(userId(user));
+            List<Object[]> batch = batches.computeIfAbsent(shard, key -> new ArrayList<>(SEED_BATCH_SIZE));
+
+            for (int registry = 0; registry < registriesPerUser; registry++) {
+                String id = TimeOrderedIdGenerator.next();
+                registryIds.add(id);
+                batch.add(new Object[]{id, "Registry " + registry, userId(user), 1_000_000});
+
+                if (batch.size() == SEED_BATCH_SIZE) {
+                    shardRouter.on(shard, () -> jdbcTemplate.batchUpdate(INSERT_REGISTRY, batch));
+                    batch.clear();
+                }
+            }
+        }
+        batches.forEach((shard, batch) -> shardRouter.on(shard, () -> jdbcTemplate.batchUpdate(INSERT_REGISTRY, batch)));
+        shardRouter.forEach(shard -> jdbcTemplate.execute("ANALYZE"));
+
+        return registryIds;
+    }
+
+    static String userId(int user) {
+        return "user-" + user;
+    }
+}
@@ -0,0 +1,113 @@
+package com.petke.budgeting.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closed-loop transfer and paged listing load against the default datasource configuration and the {@code prod}
+ * profile. Prints latency percentiles and, per workload, the connection pool size, acquire times and timeouts.
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dstart-class=com.petke.budgeting.benchmark.DataSourceLoadTest -Dexec.args="200 20"
+ * </pre>
+ * Extra arguments are passed to the application as properties. Load shedding is off, so both profiles take the full load.
+ */
+public class DataSourceLoadTest {
+
+    private static final int USERS = 1000;
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        String[] properties = args.length > 2 ? Arrays.copyOfRange(args, 2, args.length) : new String[0];
+
+        for (String profile : List.of("default", "prod")) {
+            ConfigurableApplicationContext context = BenchmarkContext.startWeb(LoadTest.concat(properties,
+                    "spring.profiles.active=" + profile,
+                    "server.tomcat.max-connections=" + (clients * 2),
+                    "server.tomcat.accept-count=" + clients,
+                    "budgeting.retry.max-attempts=100",
+                    "budgeting.load-shedding.max-in-flight=0"));
+
+            try {
+                String baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort() + "/api/budget";
+                List<String> registryIds = BenchmarkContext.seed(context, USERS, 2);
+                HttpClient client = HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_1_1)
+                        .connectTimeout(Duration.ofSeconds(30))
+                        .build();
+
+                for (int round = 0; round < 2; round++) {
+                    run(context, client, profile + " transfer", transfers(baseUrl, registryIds, clients), requests);
+                    run(context, client, profile + " listing", listings(baseUrl, clients), requests);
+                }
+            } finally {
+                context.close();
+            }
+        }
+    }
+
+    private static void run(ConfigurableApplicationContext context, HttpClient client, String label,
+                            List<HttpRequest> clientRequests, int requests) {
+        MeterRegistry meterRegistry = context.getBean(MeterRegistry.class);
+        Timer acquire = meterRegistry.get("hikaricp.connections.acquire").timer();
+        Counter timeouts = meterRegistry.get("hikaricp.connections.timeout").counter();
+        long acquiresBefore = acquire.count();
+        double acquireMillisBefore = acquire.totalTime(TimeUnit.MILLISECONDS);
+        double timeoutsBefore = timeouts.count();
+
+        LoadTest.run(client, label, clientRequests, requests);
+
+        System.out.printf("%-40s pool=%d acquires=%d acquire mean=%.2fms max=%.2fms timeouts=%.0f%n", label,
+                context.getBean(HikariDataSource.class).getMaximumPoolSize(),
+                acquire.count() - acquiresBefore,
+                (acquire.totalTime(TimeUnit.MILLISECONDS) - acquireMillisBefore) / Math.max(acquire.count() - acquiresBefore, 1),
+                acquire.max(TimeUnit.MILLISECONDS),
+                timeouts.count() - timeoutsBefore);
+    }
+
+    /**
+     * Client {@code i} moves 1 back and forth between the two registries of user {@code i % USERS}.
+     */
+    private static List<HttpRequest> transfers(String baseUrl, List<String> registryIds, int clients) {
+        List<HttpRequest> clientRequests = new ArrayList<>(clients);
+        for (int i = 0; i < clients; i++) {
+            int user = i % USERS;
+            String source = registryIds.get(user * 2 + i / USERS % 2);
+            String target = registryIds.get(user * 2 + (i / USERS + 1) % 2);
+            clientRequests.add(HttpRequest
+                    .newBuilder(URI.create(baseUrl + "/" + BenchmarkContext.userId(user) + "/registry/" + source + "/transfer"))
+                    .header("Content-Type", "application/json")
+                    .timeout(Duration.ofMinutes(2))
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"amount\":1,\"targetRegistryId\":\"" + target + "\"}"))
+                    .build());
+        }
+        return clientRequests;
+    }
+
+    /**
+     * Paged listings, unlike full listings they are not cached and always query the database.
+     */
+    private static List<HttpRequest> listings(String baseUrl, int clients) {
+        List<HttpRequest> clientRequests = new ArrayList<>(clients);
+        for (int i = 0; i < clients; i++) {
+            clientRequests.add(HttpRequest
+                    .newBuilder(URI.create(baseUrl + "/" + BenchmarkContext.userId(i % USERS) + "/registry?limit=10"))
+                    .timeout(Duration.ofMinutes(2))
+                    .build());
+        }
+        return clientRequests;
+    }
+}
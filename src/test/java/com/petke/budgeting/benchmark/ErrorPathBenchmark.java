@@ -0,0 +1,106 @@
+package com.petke.budgeting.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.petke.budgeting.controller.RegistryControllerExceptionHandler;
+import com.petke.budgeting.exception.InvalidRequestException;
+import com.petke.budgeting.service.RegistryService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Rejected requests through the dispatcher servlet, exception handler and JSON error body, without the network.
+ * {@link #invalidPageLimit} never reaches the database, the others miss with one or two queries.
+ * Run with {@code -prof gc} for the allocation per rejection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10, time = 5)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ErrorPathBenchmark {
+
+    private static final int USERS = 1000;
+
+    private ConfigurableApplicationContext context;
+    private MockMvc mockMvc;
+    private List<String> registryIds;
+    private RegistryService registryService;
+    private RegistryControllerExceptionHandler exceptionHandler;
+    private ObjectMapper objectMapper;
+    private WebRequest webRequest;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.startWeb();
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+        registryIds = BenchmarkContext.seed(context, USERS, 2);
+        registryService = context.getBean(RegistryService.class);
+        exceptionHandler = context.getBean(RegistryControllerExceptionHandler.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+        webRequest = new ServletWebRequest(new MockHttpServletRequest("GET", "/api/budget/" + BenchmarkContext.userId(0) + "/registry"));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int invalidPageLimit() throws Exception {
+        return mockMvc.perform(get("/api/budget/" + BenchmarkContext.userId(ThreadLocalRandom.current().nextInt(USERS)) + "/registry?limit=0"))
+                .andReturn().getResponse().getStatus();
+    }
+
+    /**
+     * The application's share of {@link #invalidPageLimit}: the rejection by the service, the exception handler and
+     * the JSON error body, without the servlet plumbing around them.
+     */
+    @Benchmark
+    public byte[] invalidPageLimitHandled() throws JsonProcessingException {
+        try {
+            registryService.findPageByUserId(BenchmarkContext.userId(ThreadLocalRandom.current().nextInt(USERS)), null, 0);
+            throw new IllegalStateException("Page limit 0 must be rejected");
+        } catch (InvalidRequestException e) {
+            return objectMapper.writeValueAsBytes(exceptionHandler.handle(e, webRequest).getBody());
+        }
+    }
+
+    @Benchmark
+    public int unknownUserListing() throws Exception {
+        return mockMvc.perform(get("/api/budget/unknown-" + ThreadLocalRandom.current().nextInt(USERS) + "/registry"))
+                .andReturn().getResponse().getStatus();
+    }
+
+    @Benchmark
+    public int unknownRegistryRecharge() throws Exception {
+        return mockMvc.perform(post("/api/budget/" + BenchmarkContext.userId(ThreadLocalRandom.current().nextInt(USERS)) + "/registry/unknown/recharge")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"amount\":1}"))
+                .andReturn().getResponse().getStatus();
+    }
+
+    @Benchmark
+    public int insufficientFundsTransfer() throws Exception {
+        int user = ThreadLocalRandom.current().nextInt(USERS);
+        return mockMvc.perform(post("/api/budget/" + BenchmarkContext.userId(user) + "/registry/" + registryIds.get(user * 2) + "/transfer")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"amount\":2000000,\"targetRegistryId\":\"" + registryIds.get(user * 2 + 1) + "\"}"))
+                .andReturn().getResponse().getStatus();
+    }
+}
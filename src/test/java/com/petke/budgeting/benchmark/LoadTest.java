@@ -0,0 +1,134 @@
+package com.petke.budgeting.benchmark;
+
+import com.petke.budgeting.model.Registry;
+import com.petke.budgeting.repository.RegistryRepository;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Closed-loop load test: {@code clients} concurrent clients each send {@code requests} recharges back to back,
+ * against the blocking API and against the async API. Prints latency percentiles for both.
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dstart-class=com.petke.budgeting.benchmark.LoadTest -Dexec.args="5000 4"
+ * </pre>
+ * Extra arguments are passed to the application as properties, e.g. {@code spring.profiles.active=prod}.
+ */
+public class LoadTest {
+
+    private static final int USERS = 1000;
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        String[] properties = args.length > 2 ? Arrays.copyOfRange(args, 2, args.length) : new String[0];
+
+        ConfigurableApplicationContext context = BenchmarkContext.startWeb(concat(properties,
+                "budgeting.async.enabled=true",
+                "server.tomcat.max-connections=" + (clients * 2),
+                "server.tomcat.accept-count=" + clients,
+                "budgeting.retry.max-attempts=100"));
+
+        try {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            List<String> registryIds = seed(context.getBean(RegistryRepository.class));
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(30))
+                    .build();
+
+            for (String api : List.of("api/budget", "api/async/budget")) {
+                run(client, "http://localhost:" + port + "/" + api, registryIds, clients, requests);
+                run(client, "http://localhost:" + port + "/" + api, registryIds, clients, requests);
+            }
+        } finally {
+            context.close();
+        }
+    }
+
+    private static List<String> seed(RegistryRepository registryRepository) {
+        List<String> registryIds = new ArrayList<>(USERS);
+        for (int user = 0; user < USERS; user++) {
+            registryIds.add(registryRepository.save(new Registry("Wallet", "user-" + user, BigDecimal.ZERO)).getId());
+        }
+        return registryIds;
+    }
+
+    private static void run(HttpClient client, String baseUrl, List<String> registryIds, int clients, int requests) {
+        List<HttpRequest> clientRequests = new ArrayList<>(clients);
+        for (int i = 0; i < clients; i++) {
+            int user = i % USERS;
+            clientRequests.add(HttpRequest
+                    .newBuilder(URI.create(baseUrl + "/user-" + user + "/registry/" + registryIds.get(user) + "/recharge"))
+                    .header("Content-Type", "application/json")
+                    .timeout(Duration.ofMinutes(2))
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"amount\":1}"))
+                    .build());
+        }
+        run(client, baseUrl, clientRequests, requests);
+    }
+
+    /**
+     * Every client sends its request {@code requests} times, waiting for each response before the next one.
+     */
+    static void run(HttpClient client, String label, List<HttpRequest> clientRequests, int requests) {
+        ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        AtomicInteger failures = new AtomicInteger();
+        List<CompletableFuture<Void>> loops = new ArrayList<>(clientRequests.size());
+
+        long started = System.nanoTime();
+        for (HttpRequest request : clientRequests) {
+            CompletableFuture<Void> loop = CompletableFuture.completedFuture(null);
+            for (int j = 0; j < requests; j++) {
+                loop = loop.thenCompose(ignored -> send(client, request, latencies, failures));
+            }
+            loops.add(loop);
+        }
+        CompletableFuture.allOf(loops.toArray(new CompletableFuture[0])).join();
+        long elapsed = System.nanoTime() - started;
+
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        System.out.printf("%-40s clients=%d requests=%d failures=%d throughput=%.0f req/s p50=%.1fms p99=%.1fms max=%.1fms%n",
+                label, clientRequests.size(), sorted.length, failures.get(), sorted.length / (elapsed / 1e9),
+                percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 1.0));
+    }
+
+    private static CompletableFuture<Void> send(HttpClient client, HttpRequest request,
+                                                ConcurrentLinkedQueue<Long> latencies, AtomicInteger failures) {
+        long sent = System.nanoTime();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, error) -> {
+                    latencies.add(System.nanoTime() - sent);
+                    if (error != null || response.statusCode() != 200) {
+                        failures.incrementAndGet();
+                    }
+                    return null;
+                });
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+
+    static String[] concat(String[] first, String... second) {
+        String[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+}
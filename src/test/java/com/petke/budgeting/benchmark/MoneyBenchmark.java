@@ -0,0 +1,80 @@
+package com.petke.budgeting.benchmark;
+
+import com.petke.budgeting.model.Money;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Add, subtract and funds check throughput of {@link Money} against {@link BigDecimal}.
+ * Run with {@code -prof gc} to compare the allocation rates too.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyBenchmark {
+
+    @Param({"1000.00", "123456789.99"})
+    private String balance;
+
+    private BigDecimal decimalBalance;
+    private BigDecimal decimalAmount;
+    private Money moneyBalance;
+    private Money moneyAmount;
+
+    @Setup
+    public void setUp() {
+        decimalBalance = new BigDecimal(balance);
+        decimalAmount = new BigDecimal("12.34");
+        moneyBalance = Money.of(decimalBalance);
+        moneyAmount = Money.of(decimalAmount);
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalAdd() {
+        return decimalBalance.add(decimalAmount);
+    }
+
+    @Benchmark
+    public Money moneyAdd() {
+        return moneyBalance.add(moneyAmount);
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalSubtract() {
+        return decimalBalance.subtract(decimalAmount);
+    }
+
+    @Benchmark
+    public Money moneySubtract() {
+        return moneyBalance.subtract(moneyAmount);
+    }
+
+    @Benchmark
+    public boolean bigDecimalCompare() {
+        return decimalBalance.compareTo(decimalAmount) < 0;
+    }
+
+    @Benchmark
+    public boolean moneyCompare() {
+        return moneyBalance.isLessThan(moneyAmount);
+    }
+
+    /**
+     * Funds check and both updates of a transfer, starting from the request amount.
+     */
+    @Benchmark
+    public BigDecimal bigDecimalTransfer() {
+        return decimalBalance.compareTo(decimalAmount) < 0 ? decimalBalance : decimalBalance.subtract(decimalAmount).add(decimalAmount);
+    }
+
+    @Benchmark
+    public Money moneyTransfer() {
+        Money amount = Money.of(decimalAmount);
+        return moneyBalance.isLessThan(amount) ? moneyBalance : moneyBalance.subtract(amount).add(amount);
+    }
+}
@@ -0,0 +1,110 @@
+package com.petke.budgeting.benchmark;
+
+import com.petke.budgeting.model.BalanceOperation;
+import com.petke.budgeting.model.HistoryResolution;
+import com.petke.budgeting.model.LedgerEntry;
+import com.petke.budgeting.model.event.BalanceChangedEvent;
+import com.petke.budgeting.service.RegistryHistory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A year of history of one registry, read from the pre-aggregated buckets and by scanning the ledger.
+ * {@link #users} users with one registry each get {@link #changesPerDay} balance changes a day for 365 days.
+ * Bucket reads are primary key range scans, so their cost depends on the buckets per registry, not on the number
+ * of users; raise {@link #users} towards 100000 given enough heap and patience for the seeding.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RegistryHistoryBenchmark {
+
+    private static final String INSERT_LEDGER_ENTRY = "INSERT INTO ledger_entry (id, sequence, registry_id, user_id, operation, amount, balance, created_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String SCAN_LEDGER = "SELECT COALESCE(SUM(CASE WHEN amount > 0 THEN amount ELSE 0 END), 0) AS inflow, "
+            + "COALESCE(SUM(CASE WHEN amount < 0 THEN -amount ELSE 0 END), 0) AS outflow, COUNT(*) AS operations "
+            + "FROM ledger_entry WHERE registry_id = ? AND created_at >= ? AND created_at < ?";
+    private static final long FROM = LocalDate.of(2019, 1, 1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+    private static final long TO = LocalDate.of(2020, 1, 1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+
+    @Param({"1000"})
+    private int users;
+
+    @Param({"4"})
+    private int changesPerDay;
+
+    private ConfigurableApplicationContext context;
+    private RegistryHistory registryHistory;
+    private JdbcTemplate jdbcTemplate;
+    private List<String> registryIds;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start();
+        registryHistory = context.getBean(RegistryHistory.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        registryIds = BenchmarkContext.seed(context, users, 1);
+
+        long sequence = 0;
+        long interval = TimeUnit.DAYS.toMillis(1) / changesPerDay;
+        for (int user = 0; user < users; user++) {
+            List<LedgerEntry> entries = new ArrayList<>();
+            List<Object[]> rows = new ArrayList<>();
+            BigDecimal balance = new BigDecimal("1000000.00");
+
+            for (long time = FROM; time < TO; time += interval) {
+                boolean recharge = ThreadLocalRandom.current().nextBoolean();
+                BigDecimal amount = BigDecimal.valueOf(ThreadLocalRandom.current().nextInt(1, 10_000), 2);
+                balance = recharge ? balance.add(amount) : balance.subtract(amount);
+                BalanceChangedEvent event = new BalanceChangedEvent(BenchmarkContext.userId(user), registryIds.get(user),
+                        recharge ? BalanceOperation.RECHARGE : BalanceOperation.TRANSFER_OUT, recharge ? amount : amount.negate(), balance, time);
+                entries.add(new LedgerEntry(++sequence, event));
+                rows.add(new Object[]{String.format("%032d", sequence), sequence, event.getRegistryId(), event.getUserId(),
+                        event.getOperation().name(), event.getAmount(), event.getBalance(), time});
+            }
+
+            registryHistory.record(entries);
+            jdbcTemplate.batchUpdate(INSERT_LEDGER_ENTRY, rows);
+        }
+        jdbcTemplate.execute("CREATE INDEX idx_ledger_entry_registry_created_at ON ledger_entry (registry_id, created_at)");
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object yearByMonthBuckets() {
+        int user = ThreadLocalRandom.current().nextInt(users);
+        return registryHistory.findBuckets(BenchmarkContext.userId(user), registryIds.get(user), HistoryResolution.MONTH, FROM, TO);
+    }
+
+    @Benchmark
+    public Object yearByDayBuckets() {
+        int user = ThreadLocalRandom.current().nextInt(users);
+        return registryHistory.findBuckets(BenchmarkContext.userId(user), registryIds.get(user), HistoryResolution.DAY, FROM, TO);
+    }
+
+    /**
+     * Baseline: the yearly totals aggregated from the raw ledger entries, with an index on {@code (registry_id, created_at)}.
+     */
+    @Benchmark
+    public Map<String, Object> yearLedgerScan() {
+        return jdbcTemplate.queryForMap(SCAN_LEDGER, registryIds.get(ThreadLocalRandom.current().nextInt(users)), FROM, TO);
+    }
+}
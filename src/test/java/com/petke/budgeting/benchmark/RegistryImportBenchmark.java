@@ -0,0 +1,84 @@
+package com.petke.budgeting.benchmark;
+
+import com.petke.budgeting.model.response.ImportResult;
+import com.petke.budgeting.service.RegistryBulkService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk import of {@link #rows} registries from an in-memory CSV or NDJSON document into an empty table,
+ * and export of them. Rows per second are {@link #rows} divided by the time of one operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RegistryImportBenchmark {
+
+    @Param({"1000000"})
+    private int rows;
+
+    @Param({"10000"})
+    private int batchSize;
+
+    private ConfigurableApplicationContext context;
+    private RegistryBulkService registryBulkService;
+    private JdbcTemplate jdbcTemplate;
+    private byte[] csv;
+    private byte[] ndjson;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start("budgeting.bulk.batch-size=" + batchSize);
+        registryBulkService = context.getBean(RegistryBulkService.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+
+        StringBuilder csvBuilder = new StringBuilder("id,label,userId,amount\n");
+        StringBuilder ndjsonBuilder = new StringBuilder();
+        for (int i = 0; i < rows; i++) {
+            csvBuilder.append(",Registry ").append(i).append(',').append(BenchmarkContext.userId(i / 4)).append(",1000.00\n");
+            ndjsonBuilder.append("{\"label\":\"Registry ").append(i).append("\",\"userId\":\"").append(BenchmarkContext.userId(i / 4))
+                    .append("\",\"amount\":1000.00}\n");
+        }
+        csv = csvBuilder.toString().getBytes(StandardCharsets.UTF_8);
+        ndjson = ndjsonBuilder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Setup(Level.Invocation)
+    public void truncate() {
+        jdbcTemplate.execute("TRUNCATE TABLE registry");
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ImportResult importCsv() throws IOException {
+        return registryBulkService.importCsv(new ByteArrayInputStream(csv));
+    }
+
+    @Benchmark
+    public ImportResult importNdjson() throws IOException {
+        return registryBulkService.importNdjson(new ByteArrayInputStream(ndjson));
+    }
+
+    /**
+     * Exports the rows of the preceding import into a stream that discards them.
+     */
+    @Benchmark
+    public void exportCsv() throws IOException {
+        registryBulkService.importCsv(new ByteArrayInputStream(csv));
+        registryBulkService.exportCsv(OutputStream.nullOutputStream());
+    }
+}
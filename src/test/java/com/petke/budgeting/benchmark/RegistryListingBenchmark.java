@@ -0,0 +1,63 @@
+package com.petke.budgeting.benchmark;
+
+import com.petke.budgeting.model.response.RegistryResponse;
+import com.petke.budgeting.repository.RegistryRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Listing one user with {@link #registries} registries: managed entities copied into responses against the
+ * projection query selecting straight into them, both in a read-only transaction.
+ * Run with {@code -prof gc} to compare the allocation per listing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RegistryListingBenchmark {
+
+    @Param({"100", "5000"})
+    private int registries;
+
+    private ConfigurableApplicationContext context;
+    private RegistryRepository registryRepository;
+    private TransactionTemplate readOnlyTransaction;
+    private String userId;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start();
+        registryRepository = context.getBean(RegistryRepository.class);
+        readOnlyTransaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnlyTransaction.setReadOnly(true);
+        BenchmarkContext.seed(context, 1, registries);
+        userId = BenchmarkContext.userId(0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<RegistryResponse> entities() {
+        return readOnlyTransaction.execute(status -> registryRepository
+                .findByUserId(userId)
+                .stream()
+                .map(RegistryResponse::new)
+                .collect(Collectors.toUnmodifiableList()));
+    }
+
+    @Benchmark
+    public List<RegistryResponse> projection() {
+        return readOnlyTransaction.execute(status -> registryRepository.findResponsesByUserId(userId));
+    }
+}
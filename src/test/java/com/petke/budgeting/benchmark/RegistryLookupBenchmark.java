@@ -0,0 +1,63 @@
+package com.petke.budgeting.benchmark;
+
+import com.petke.budgeting.repository.RegistryRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registry lookups on a table seeded with {@link #registries} rows, {@link #registriesPerUser} per user,
+ * with the {@code (user_id, id)} index of the V2 migration and with the index dropped again.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RegistryLookupBenchmark {
+
+    @Param({"true", "false"})
+    private boolean userIndex;
+
+    @Param({"1000000"})
+    private int registries;
+
+    @Param({"4"})
+    private int registriesPerUser;
+
+    private ConfigurableApplicationContext context;
+    private RegistryRepository registryRepository;
+    private List<String> registryIds;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start();
+        registryRepository = context.getBean(RegistryRepository.class);
+        registryIds = BenchmarkContext.seed(context, registries / registriesPerUser, registriesPerUser);
+
+        if (!userIndex) {
+            context.getBean(JdbcTemplate.class).execute("DROP INDEX idx_registry_user_id");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object findByUserId() {
+        return registryRepository.findByUserId(BenchmarkContext.userId(ThreadLocalRandom.current().nextInt(registryIds.size() / registriesPerUser)));
+    }
+
+    @Benchmark
+    public Object findByIdAndUserId() {
+        int i = ThreadLocalRandom.current().nextInt(registryIds.size());
+        return registryRepository.findByIdAndUserId(registryIds.get(i), BenchmarkContext.userId(i / registriesPerUser));
+    }
+}
@@ -0,0 +1,54 @@
+package com.petke.budgeting.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.petke.budgeting.config.MoneyJsonComponent;
+import com.petke.budgeting.model.Money;
+import com.petke.budgeting.model.Registry;
+import com.petke.budgeting.model.TimeOrderedIdGenerator;
+import com.petke.budgeting.model.response.RegistryResponse;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON serialization of a registry listing the way the controller writes it, without the Spring context.
+ * Run with {@code -prof gc} for the allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegistryResponseSerializationBenchmark {
+
+    @Param({"4", "100"})
+    private int registries;
+
+    private ObjectMapper objectMapper;
+    private List<RegistryResponse> registryResponses;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .serializerByType(Money.class, new MoneyJsonComponent.Serializer())
+                .build();
+
+        registryResponses = new ArrayList<>(registries);
+        for (int i = 0; i < registries; i++) {
+            Registry registry = new Registry("Registry " + i, "benchmark", new BigDecimal("1234.56"));
+            registry.setId(TimeOrderedIdGenerator.next());
+            registryResponses.add(new RegistryResponse(registry));
+        }
+    }
+
+    @Benchmark
+    public byte[] writeValueAsBytes() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(registryResponses);
+    }
+}
@@ -0,0 +1,80 @@
+package com.petke.budgeting.benchmark;
+
+import com.petke.budgeting.model.request.RechargeRequest;
+import com.petke.budgeting.model.request.TransferRequest;
+import com.petke.budgeting.service.RegistryService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hot paths of {@link RegistryService} against an in-memory H2 database seeded with {@link #users} users
+ * owning {@link #registriesPerUser} registries each. Run with {@code -prof gc} for the allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RegistryServiceBenchmark {
+
+    @Param({"1000"})
+    private int users;
+
+    @Param({"4"})
+    private int registriesPerUser;
+
+    /**
+     * {@code 0} disables the registry listing cache, so findByUserId always reaches the database.
+     */
+    @Param({"10000", "0"})
+    private int registryCacheSize;
+
+    private ConfigurableApplicationContext context;
+    private RegistryService registryService;
+    private List<String> registryIds;
+    private final RechargeRequest rechargeRequest = new RechargeRequest();
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start("budgeting.registry-cache.maximum-size=" + registryCacheSize);
+        registryService = context.getBean(RegistryService.class);
+        registryIds = BenchmarkContext.seed(context, users, registriesPerUser);
+        rechargeRequest.setAmount(BigDecimal.ONE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object findByUserId() {
+        return registryService.findByUserId(BenchmarkContext.userId(ThreadLocalRandom.current().nextInt(users)));
+    }
+
+    @Benchmark
+    public void recharge() {
+        int registry = ThreadLocalRandom.current().nextInt(registryIds.size());
+        registryService.recharge(BenchmarkContext.userId(registry / registriesPerUser), registryIds.get(registry), rechargeRequest);
+    }
+
+    @Benchmark
+    public void transfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int user = random.nextInt(users);
+        int source = random.nextInt(registriesPerUser);
+        int target = (source + 1 + random.nextInt(registriesPerUser - 1)) % registriesPerUser;
+
+        TransferRequest transferRequest = new TransferRequest();
+        transferRequest.setAmount(BigDecimal.ONE);
+        transferRequest.setTargetRegistryId(registryIds.get(user * registriesPerUser + target));
+
+        registryService.transfer(BenchmarkContext.userId(user), registryIds.get(user * registriesPerUser + source), transferRequest);
+    }
+}
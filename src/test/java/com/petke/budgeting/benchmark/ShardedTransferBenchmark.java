@@ -0,0 +1,73 @@
+package com.petke.budgeting.benchmark;
+
+import com.petke.budgeting.model.request.TransferRequest;
+import com.petke.budgeting.service.RegistryService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Transfers per second between the two registries of random users, spread over {@link #shards} in-memory H2
+ * databases with a connection pool each. Every shard only sees the transfers of its own users, so throughput grows
+ * with the shards as long as the database, not the CPU, is the limit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(16)
+public class ShardedTransferBenchmark {
+
+    private static final int USERS = 10_000;
+
+    @Param({"1", "2", "4"})
+    private int shards;
+
+    private ConfigurableApplicationContext context;
+    private RegistryService registryService;
+    private List<String> registryIds;
+
+    @Setup
+    public void setUp() {
+        String database = UUID.randomUUID().toString();
+        context = BenchmarkContext.start(
+                "budgeting.sharding.urls=" + IntStream.range(0, shards)
+                        .mapToObj(shard -> "jdbc:h2:mem:" + database + "-" + shard + ";DB_CLOSE_DELAY=-1;mode=MySQL")
+                        .collect(Collectors.joining(",")),
+                "budgeting.retry.max-attempts=100",
+                "logging.level.org.hibernate.engine.jdbc.spi.SqlExceptionHelper=OFF");
+        registryService = context.getBean(RegistryService.class);
+        registryIds = BenchmarkContext.seed(context, USERS, 2);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void transfer(Blackhole blackhole) {
+        int user = ThreadLocalRandom.current().nextInt(USERS);
+        int source = ThreadLocalRandom.current().nextInt(2);
+
+        TransferRequest transferRequest = new TransferRequest();
+        transferRequest.setAmount(BigDecimal.ONE);
+        transferRequest.setTargetRegistryId(registryIds.get(user * 2 + 1 - source));
+
+        try {
+            registryService.transfer(BenchmarkContext.userId(user), registryIds.get(user * 2 + source), transferRequest);
+        } catch (RuntimeException e) {
+            blackhole.consume(e);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.petke.budgeting.benchmark;
+
+import com.petke.budgeting.BudgetingApplication;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time from starting the application to the response of its first registry listing, with and without the
+ * {@code faststart} profile. Every measurement runs in a fresh JVM against a file database that the warmup fork
+ * already migrated, like a scaled out instance starting next to running ones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 5, warmups = 1)
+public class StartupBenchmark {
+
+    @Param({"default", "faststart"})
+    private String profile;
+
+    private ConfigurableApplicationContext context;
+
+    @Benchmark
+    public int timeToFirstRequest() throws IOException, InterruptedException {
+        context = new SpringApplicationBuilder(BudgetingApplication.class).run(
+                "--spring.profiles.active=" + profile,
+                "--spring.datasource.url=jdbc:h2:file:./target/startup-benchmark-" + profile + ";mode=MySQL",
+                "--server.port=0",
+                "--logging.level.root=WARN");
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/budget/1/registry")).build();
+        return HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() {
+        context.close();
+    }
+}
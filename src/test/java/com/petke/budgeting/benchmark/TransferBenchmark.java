@@ -0,0 +1,76 @@
+package com.petke.budgeting.benchmark;
+
+import com.petke.budgeting.model.Registry;
+import com.petke.budgeting.model.request.TransferRequest;
+import com.petke.budgeting.repository.RegistryRepository;
+import com.petke.budgeting.service.RegistryService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfers per second between registries of a single user, JPA path against the in-memory balance engine.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class TransferBenchmark {
+
+    private static final String USER_ID = "benchmark";
+
+    @Param({"false", "true"})
+    private boolean balanceEngine;
+
+    @Param({"4"})
+    private int registries;
+
+    private ConfigurableApplicationContext context;
+    private RegistryService registryService;
+    private final List<String> registryIds = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start(
+                "budgeting.balance-engine.enabled=" + balanceEngine,
+                "logging.level.org.hibernate.engine.jdbc.spi.SqlExceptionHelper=OFF");
+        registryService = context.getBean(RegistryService.class);
+
+        RegistryRepository registryRepository = context.getBean(RegistryRepository.class);
+        for (int i = 0; i < registries; i++) {
+            registryIds.add(registryRepository.save(new Registry("Registry " + i, USER_ID, new BigDecimal("1000000000"))).getId());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void transfer(Blackhole blackhole) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int source = random.nextInt(registries);
+        int target = (source + 1 + random.nextInt(registries - 1)) % registries;
+
+        TransferRequest transferRequest = new TransferRequest();
+        transferRequest.setAmount(BigDecimal.ONE);
+        transferRequest.setTargetRegistryId(registryIds.get(target));
+
+        try {
+            registryService.transfer(USER_ID, registryIds.get(source), transferRequest);
+        } catch (RuntimeException e) {
+            // Lock timeouts on the JPA path are part of what is being measured.
+            blackhole.consume(e);
+        }
+    }
+}